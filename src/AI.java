@@ -1,5 +1,7 @@
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 
 /* 
  * AI PROJECT - M1 I2D, MIAGE
@@ -18,13 +20,13 @@ import java.util.Map.Entry;
  * Class used to model the set of belief states already visited and to keep track of their values (in order to avoid visiting multiple times the same states)
  */
 class ExploredSet{
-	TreeMap<BeliefState, Float> exploredSet;
+	TreeMap<BeliefState, Double> exploredSet;
 	
 	/**
 	 * construct an empty set
 	 */
 	public ExploredSet() {
-		this.exploredSet = new TreeMap<BeliefState, Float>();
+		this.exploredSet = new TreeMap<BeliefState, Double>();
 	}
 	
 	/**
@@ -32,8 +34,8 @@ class ExploredSet{
 	 * @param state the state for which the search takes place
 	 * @return the value of the state if it belongs to the set, and null otherwise
 	 */
-	public Float get(BeliefState state) {
-		Entry<BeliefState, Float> entry = this.exploredSet.ceilingEntry(state);
+	public Double get(BeliefState state) {
+		Entry<BeliefState, Double> entry = this.exploredSet.ceilingEntry(state);
 		if(entry == null || state.compareTo(entry.getKey()) != 0) {
 			return null;
 		}
@@ -43,38 +45,151 @@ class ExploredSet{
 	/**
 	 * Put a belief state and its corresponding value into the set
 	 * @param beliefState the belief state to be added
-	 * @param value the
+	 * @param value the value of the belief state
 	 */
-	public void put(BeliefState beliefState, float value) {
+	public void put(BeliefState beliefState, double value) {
 		this.exploredSet.put(beliefState, value);
 	}
+	
+	/**
+	 * Remove all the belief states of the set
+	 */
+	public void clear() {
+		this.exploredSet.clear();
+	}
 }
 
 /**
- * Class used to store all possible results of performing an action at a given belief state
+ * Class used to store all possible results of performing an action at a given belief state.
+ * The results computed by predict and putPiecePlayer are built lazily: the states are only gathered by percept, and the belief state of a percept is built
+ * the first time it is requested, so the search does not build the belief states it does not visit (for example after a belief state without plan in andSearch).
+ * The belief states are iterated in the decreasing order of their probability.
  */
 class Results implements Iterable<BeliefState>{
-	TreeMap<String, BeliefState> results;
-	
+	/**
+	 * States of the results which have the same percept, and their belief state once it is built
+	 */
+	private static class Bucket {
+		final byte[] isVisible;
+		final ArrayList<GameState> states;
+		double proba;
+		String percept;
+		BeliefState beliefState;
+
+		Bucket(byte[] isVisible) {
+			this.isVisible = isVisible;
+			this.states = new ArrayList<GameState>();
+		}
+
+		String percept() {
+			if(this.percept == null)
+				this.percept = BeliefState.percept(this.isVisible);
+			return this.percept;
+		}
+	}
+
+	//belief state from which the results are computed (the belief states of the buckets follow it)
+	private final BeliefState parent;
+	private final ArrayList<Bucket> buckets;
+	private final HashMap<ByteBuffer, Bucket> byVisibility;
+	private boolean sorted;
+
 	public Results(){
-		this.results = new TreeMap<String, BeliefState>();
+		this(null);
 	}
-	
+
+	/**
+	 * Construct empty results of an action performed at a given belief state, to which the states are added with add
+	 * @param parent the belief state in which the action is performed
+	 */
+	Results(BeliefState parent){
+		this.parent = parent;
+		this.buckets = new ArrayList<Bucket>();
+		this.byVisibility = new HashMap<ByteBuffer, Bucket>();
+	}
+
+	/**
+	 * Add a state to the belief state of its percept (the belief state is built later, the states being added in the same order)
+	 * @param isVisible the squares visible after the action in the state (the array must not be modified afterwards)
+	 * @param state the state resulting from the action
+	 */
+	void add(byte[] isVisible, GameState state) {
+		Bucket bucket = this.byVisibility.get(ByteBuffer.wrap(isVisible));
+		if(bucket == null) {
+			bucket = new Bucket(isVisible);
+			this.byVisibility.put(ByteBuffer.wrap(isVisible), bucket);
+			this.buckets.add(bucket);
+			this.sorted = false;
+		}
+		bucket.states.add(state);
+		bucket.proba += state.proba();
+	}
+
 	/**
 	 * Return the belief state of the result that correspond to a given percept
 	 * @param percept String that describe what is visible on the board for player 2
 	 * @return belief state corresponding percept, or null if such a percept is not possible
 	 */
 	public BeliefState get(String percept) {
-		return this.results.get(percept);
+		for(Bucket bucket: this.buckets) {
+			if(bucket.percept().equals(percept))
+				return this.beliefState(bucket);
+		}
+		return null;
 	}
-	
+
 	public void put(String s, BeliefState state) {
-		this.results.put(s, state);
+		Bucket bucket = null;
+		for(Bucket b: this.buckets) {
+			if(b.percept().equals(s))
+				bucket = b;
+		}
+		if(bucket == null) {
+			bucket = new Bucket(null);
+			bucket.percept = s;
+			this.buckets.add(bucket);
+		}
+		bucket.beliefState = state;
+		bucket.proba = state.probaSum();
+		this.sorted = false;
 	}
-	
+
+	/**
+	 * Return the number of percepts of the results
+	 * @return the number of belief states
+	 */
+	public int size() {
+		return this.buckets.size();
+	}
+
+	//build the belief state of a bucket if it is not built yet
+	private BeliefState beliefState(Bucket bucket) {
+		if(bucket.beliefState == null) {
+			BeliefState bs = this.parent.successor(bucket.isVisible);
+			for(GameState state: bucket.states) {
+				bs.add(state);
+			}
+			bucket.beliefState = bs;
+		}
+		return bucket.beliefState;
+	}
+
 	public Iterator<BeliefState> iterator(){
-		return this.results.values().iterator();
+		//the most probable belief states first, and the percepts in increasing order for the same probability
+		if(!this.sorted) {
+			this.buckets.sort((a, b) -> a.proba != b.proba? Double.compare(b.proba, a.proba): a.percept().compareTo(b.percept()));
+			this.sorted = true;
+		}
+		Iterator<Bucket> iterator = this.buckets.iterator();
+		return new Iterator<BeliefState>() {
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			public BeliefState next() {
+				return Results.this.beliefState(iterator.next());
+			}
+		};
 	}
 }
 
@@ -88,18 +203,41 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	
 	private int played;
 	
+	private Geometry geometry;
+	
+	//probability-weighted occupancy of each square: occupancy[2 * (row * columns + column)] is the sum of the probabilities of the states with a yellow piece on the square, and the next entry the same for red
+	//(the last entry is the sum of the probabilities of all the states).
+	//It is allocated the first time it is requested, then kept up to date by add and filter and inherited by the belief states computed by predict and putPiecePlayer.
+	private double[] occupancy;
+	
+	//canonical form of the belief state (see canonical), computed the first time it is requested and forgotten when the states or the visible squares change
+	private BeliefState canonical;
+	
 	public BeliefState() {
+		this(Geometry.DEFAULT);
+	}
+	
+	/**
+	 * Construct an empty belief state for a given geometry of the game
+	 * @param geometry the geometry of the game
+	 */
+	public BeliefState(Geometry geometry) {
+		this.geometry = geometry;
 		this.beliefState = new TreeSet<GameState>();
-		this.isVisible = new byte[6];
-		for(int i = 0; i < 6; i++) {
+		this.isVisible = new byte[geometry.visibleBytes];
+		for(int i = 0; i < this.isVisible.length; i++) {
 			this.isVisible[i] = Byte.MIN_VALUE;
 		}
 		this.played = 0;
 	}
 	
 	public BeliefState(byte[] isVisible, int played) {
-		this();
-		for(int i = 0; i < 6; i++) {
+		this(Geometry.DEFAULT, isVisible, played);
+	}
+	
+	public BeliefState(Geometry geometry, byte[] isVisible, int played) {
+		this(geometry);
+		for(int i = 0; i < this.isVisible.length; i++) {
 			this.isVisible[i] = isVisible[i];
 		}
 		this.played = played;
@@ -107,10 +245,20 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	
 	public void setStates(BeliefState beliefState) {
 		this.beliefState = beliefState.beliefState;
-		for(int i = 0; i < 6; i++) {
+		if(this.geometry != beliefState.geometry) {
+			this.geometry = beliefState.geometry;
+			this.isVisible = new byte[beliefState.isVisible.length];
+		}
+		for(int i = 0; i < this.isVisible.length; i++) {
 			this.isVisible[i] = beliefState.isVisible[i];
 		}
 		this.played = beliefState.played;
+		this.occupancy = beliefState.occupancy;
+		this.canonical = null;
+	}
+	
+	public Geometry geometry() {
+		return this.geometry;
 	}
 	
 	public boolean contains(GameState state) {
@@ -133,6 +281,39 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 			GameState copy = this.beliefState.floor(state);
 			copy.addProba(state.proba());
 		}
+		if(this.occupancy != null) {
+			this.addOccupancy(state, state.proba());
+		}
+		this.canonical = null;
+	}
+	
+	/**
+	 * Return the probability-weighted occupancy of the squares (see the field occupancy). It is computed from the states the first time it is requested, and updated incrementally afterwards.
+	 * @return for each square (index 2 * (row * columns + column)), the sum of the probabilities of the states with a yellow piece on the square, followed by the same sum for red,
+	 * and in the last entry the sum of the probabilities of all the states
+	 */
+	public double[] occupancy() {
+		if(this.occupancy == null) {
+			this.occupancy = new double[2 * this.geometry.rows * this.geometry.columns + 1];
+			for(GameState state: this.beliefState) {
+				this.addOccupancy(state, state.proba());
+			}
+		}
+		return this.occupancy;
+	}
+	
+	private void addOccupancy(GameState state, double proba) {
+		int square = 0;
+		for(int row = 0; row < this.geometry.rows; row++) {
+			for(int column = 0; column < this.geometry.columns; column++) {
+				int content = state.content(row, column);
+				if(content != 0) {
+					this.occupancy[square + content - 1] += proba;
+				}
+				square += 2;
+			}
+		}
+		this.occupancy[square] += proba;
 	}
 	
 	/**
@@ -141,99 +322,35 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	 */
 	public Results predict(){
 		if(this.turn()) {
-			Results tmstates = new Results();
+			Results tmstates = new Results(this);
 			for(GameState state: this.beliefState) {
-				RandomSelector rs = new RandomSelector();
-				ArrayList<Integer> listColumn = new ArrayList<Integer>();
-				ArrayList<Integer> listGameOver = new ArrayList<Integer>();
-				int minGameOver = Integer.MAX_VALUE;
-				for(int column = 0; column < 7; column++) {
-					if(!state.isFull(column)) {
-						GameState copy = state.copy();
-						copy.putPiece(column);
-						if(copy.isGameOver()) {
-							listColumn.clear();
-							listColumn.add(column);
-							rs = new RandomSelector();
-							rs.add(1);
-							break;
-						}
-						int nbrGameOver = 0;
-						for(int i = 0; i < 7; i++) {
-							if(!copy.isFull(i)) {
-								GameState copycopy = copy.copy();
-								copycopy.putPiece(i);
-								if(copycopy.isGameOver()) {
-									nbrGameOver++;
-								}
-							}
-						}
-						if(nbrGameOver == 0) {
-							rs.add(ProbabilisticOpponentAI.heuristicValue(state, column));
-							listColumn.add(column);
-						}
-						else {
-							if(minGameOver > nbrGameOver) {
-								minGameOver = nbrGameOver;
-								listGameOver.clear();
-								listGameOver.add(column);
-							}
-							else {
-								if(minGameOver == nbrGameOver) {
-									listGameOver.add(column);
-								}
-							}
-						}
-					}
-				}
-				int index = 0;
-				if(listColumn.isEmpty()) {
-					for(int column: listGameOver) {
-						listColumn.add(column);
-						rs.add(1);
-					}
-				}
-				for(int column: listColumn) {
+				MoveList listColumn = ProbabilisticOpponentAI.policy(state);
+				for(int k = 0; k < listColumn.size(); k++) {
+					int column = listColumn.get(k);
 					GameState copy = state.copy();
 					if(!copy.isFull(column)) {
-						byte[] tab = new byte[6];
-						for(int i = 0; i < 6; i++) {
+						byte[] tab = new byte[this.isVisible.length];
+						for(int i = 0; i < tab.length; i++) {
 							tab[i] = this.isVisible[i];
 						}
 						copy.putPiece(column);
 						if(copy.isGameOver()) {
-							for(int i = 0; i < 6; i++) {
-								for(int j = 0; j < 7; j++) {
-									BeliefState.setVisible(i, j, true, tab);
+							for(int i = 0; i < this.geometry.rows; i++) {
+								for(int j = 0; j < this.geometry.columns; j++) {
+									BeliefState.setVisible(i, j, true, tab, this.geometry);
 								}
 							}
 						}
 						else {
 							boolean isVisible = copy.isGameOver() || copy.isFull(column);
-							BeliefState.setVisible(5, column, isVisible, tab);
-							for(int row = 4; row > -1; row--) {
+							BeliefState.setVisible(this.geometry.rows - 1, column, isVisible, tab, this.geometry);
+							for(int row = this.geometry.rows - 2; row > -1; row--) {
 								isVisible = isVisible || copy.content(row, column) == 2;
-								BeliefState.setVisible(row, column, isVisible, tab);
+								BeliefState.setVisible(row, column, isVisible, tab, this.geometry);
 							}
 						}
-						String s = "";
-						char c = 0;
-						for(int i = 0; i < 6; i++) {
-							int val = tab[i] + 128;
-							s += ((char)(val % 128));
-							c += (val / 128) << i;
-						}
-						s += c;
-						copy.multProba(rs.probability(index++));
-						BeliefState bs = tmstates.get(s);
-						if(bs!= null) {
-							bs.add(copy);
-						}
-						else {
-							bs = new BeliefState(tab, this.played + 1);
-							bs.add(copy);
-							tmstates.put(s, bs);
-						}
+						copy.multProba((float) listColumn.score(k));
+						tmstates.add(tab, copy);
 					}
 				}
 			}
@@ -251,46 +368,30 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	 */
 	public Results putPiecePlayer(int column){
 		if(!this.turn()) {
-			Results tmstates = new Results();
+			Results tmstates = new Results(this);
 			for(GameState state: this.beliefState) {
 				GameState copy = state.copy();
-				byte[] tab = new byte[6];
-				for(int i = 0; i < 6; i++) {
+				byte[] tab = new byte[this.isVisible.length];
+				for(int i = 0; i < tab.length; i++) {
 					tab[i] = this.isVisible[i];
 				}
 				copy.putPiece(column);
 				if(copy.isGameOver()) {
-					for(int i = 0; i < 6; i++) {
-						for(int j = 0; j < 7; j++) {
-							BeliefState.setVisible(i, j, true, tab);
+					for(int i = 0; i < this.geometry.rows; i++) {
+						for(int j = 0; j < this.geometry.columns; j++) {
+							BeliefState.setVisible(i, j, true, tab, this.geometry);
 						}
 					}
 				}
 				else {
 					boolean isVisible = copy.isFull(column);
-					BeliefState.setVisible(5, column, isVisible, tab);
-					for(int row = 4; row > -1; row--) {
+					BeliefState.setVisible(this.geometry.rows - 1, column, isVisible, tab, this.geometry);
+					for(int row = this.geometry.rows - 2; row > -1; row--) {
 						isVisible = isVisible || copy.content(row, column) == 2;
-						BeliefState.setVisible(row, column, isVisible, tab);
+						BeliefState.setVisible(row, column, isVisible, tab, this.geometry);
 					}
 				}
-				String s = "";
-				char c = 0;
-				for(int i = 0; i < 6; i++) {
-					int val = tab[i] + 128;
-					s += ((char)(val % 128));
-					c += (val / 128) << i;
-				}
-				s += c;
-				BeliefState bs = tmstates.get(s);
-				if(bs!= null) {
-					bs.add(copy);
-				}
-				else {
-					bs = new BeliefState(tab, this.played + 1);
-					bs.add(copy);
-					tmstates.put(s, bs);
-				}
+				tmstates.add(tab, copy);
 			}
 			return tmstates;
 		}
@@ -300,37 +401,184 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 		
 	}
 	
-	public static BeliefState filter(Results beliefStates, GameState state) {
-		byte tab[] = new byte[6];
-		for(int i = 0; i < 6; i++) {
+	/**
+	 * Compute the percept of player 2 for a given state of the game: the red pieces and all the pieces below them are visible, as well as the full columns, and the whole board is visible when the game is over
+	 * @param state the actual state of the game
+	 * @return String that describe what is visible on the board for player 2 (the key of the belief state containing the state in a Results object)
+	 */
+	public static String percept(GameState state) {
+		return BeliefState.percept(BeliefState.visibility(state));
+	}
+	
+	/**
+	 * Compute the squares visible by player 2 for a given state of the game (see percept(GameState))
+	 * @param state the actual state of the game
+	 * @return the visible squares, encoded as the isVisible field of a belief state (one bit per square)
+	 */
+	public static byte[] visibility(GameState state) {
+		Geometry geometry = state.geometry();
+		byte tab[] = new byte[geometry.visibleBytes];
+		for(int i = 0; i < tab.length; i++) {
 			tab[i] = Byte.MIN_VALUE;
 		}
-		for(int column = 0; column < 7; column++) {
+		for(int column = 0; column < geometry.columns; column++) {
 			boolean isVisible = state.isGameOver() || state.isFull(column);
-			BeliefState.setVisible(5, column, isVisible, tab);
-			for(int row = 4; row > -1; row--) {
+			BeliefState.setVisible(geometry.rows - 1, column, isVisible, tab, geometry);
+			for(int row = geometry.rows - 2; row > -1; row--) {
 				isVisible = isVisible || (state.content(row, column) == 2);
-				BeliefState.setVisible(row, column, isVisible, tab);
+				BeliefState.setVisible(row, column, isVisible, tab, geometry);
 			}
 		}
-		String s = "";
-		char c = 0;
-		for(int i = 0; i < 6; i++) {
-			int val = tab[i] + 128;
-			s += ((char)(val % 128));
-			c += (val / 128) << i;
-		}
-		s += c;
+		return tab;
+	}
+	
+	public static BeliefState filter(Results beliefStates, GameState state) {
+		String s = BeliefState.percept(state);
 		BeliefState beliefState = beliefStates.get(s);
+		beliefState.normalize();
+		return beliefState;
+	}
+
+	//scale the probabilities of the states (and the occupancy) so that their sum is 1
+	private void normalize() {
+		this.canonical = null;
 		RandomSelector rs = new RandomSelector();
-		for(GameState st: beliefState.beliefState) {
+		for(GameState st: this.beliefState) {
 			rs.add(st.proba());
 		}
 		int i = 0;
-		for(GameState st: beliefState.beliefState) {
+		for(GameState st: this.beliefState) {
 			st.setProba(rs.probability(i++));
 		}
-		return beliefState;
+		if(this.occupancy != null) {
+			for(int j = 0; j < this.occupancy.length; j++) {
+				this.occupancy[j] /= rs.somme;
+			}
+		}
+	}
+
+	/**
+	 * Update the belief state after an action of the player whose result is observed: it is the belief state filter(putPiecePlayer(column), game), but only the states
+	 * consistent with the percept of the game are computed, instead of the belief states of all the percepts. This function should be used only when this is the turn of the player.
+	 * @param column index of the column played
+	 * @param game the actual state of the game after the action (only its percept is used)
+	 * @return the belief state of the percept of the game, with probabilities normalized, or null if this is not the turn of the player or if no state is consistent with the percept
+	 */
+	public BeliefState observePlayer(int column, GameState game) {
+		if(this.turn())
+			return null;
+		byte[] percept = BeliefState.visibility(game);
+		boolean[] unchanged = this.unchangedOutside(percept);
+		boolean allVisible = BeliefState.allVisible(percept, this.geometry);
+		BeliefState bs = this.successor(percept);
+		for(GameState state: this.beliefState) {
+			GameState copy = this.observe(state, column, percept, unchanged, allVisible);
+			if(copy != null) {
+				bs.add(copy);
+			}
+		}
+		if(bs.size() == 0)
+			return null;
+		bs.normalize();
+		return bs;
+	}
+
+	/**
+	 * Update the belief state after an action of the opponent whose result is observed: it is the belief state filter(predict(), game), but only the states
+	 * consistent with the percept of the game are computed, instead of the belief states of all the percepts. This function should be used only when this is the turn of the opponent.
+	 * @param game the actual state of the game after the action (only its percept is used)
+	 * @return the belief state of the percept of the game, with probabilities normalized, or null if this is not the turn of the opponent or if no state is consistent with the percept
+	 */
+	public BeliefState observeOpponent(GameState game) {
+		if(!this.turn())
+			return null;
+		byte[] percept = BeliefState.visibility(game);
+		boolean[] unchanged = this.unchangedOutside(percept);
+		boolean allVisible = BeliefState.allVisible(percept, this.geometry);
+		BeliefState bs = this.successor(percept);
+		for(GameState state: this.beliefState) {
+			MoveList listColumn = ProbabilisticOpponentAI.policy(state);
+			for(int k = 0; k < listColumn.size(); k++) {
+				int column = listColumn.get(k);
+				if(state.isFull(column))
+					continue;
+				GameState copy = this.observe(state, column, percept, unchanged, allVisible);
+				if(copy != null) {
+					copy.multProba((float) listColumn.score(k));
+					bs.add(copy);
+				}
+			}
+		}
+		if(bs.size() == 0)
+			return null;
+		bs.normalize();
+		return bs;
+	}
+
+	//empty belief state following this one, with the given visible squares
+	BeliefState successor(byte[] percept) {
+		BeliefState bs = new BeliefState(this.geometry, percept, this.played + 1);
+		if(this.occupancy != null) {
+			bs.occupancy = new double[this.occupancy.length];
+		}
+		return bs;
+	}
+
+	//for each column, true if the visible squares outside the column are the same in the belief state and in the percept (an action which does not end the game only changes the visibility of its column)
+	private boolean[] unchangedOutside(byte[] percept) {
+		boolean[] unchanged = new boolean[this.geometry.columns];
+		for(int column = 0; column < this.geometry.columns; column++) {
+			unchanged[column] = true;
+			for(int row = 0; row < this.geometry.rows && unchanged[column]; row++) {
+				for(int other = 0; other < this.geometry.columns; other++) {
+					if(other != column && this.isVisible(row, other) != BeliefState.isVisible(row, other, percept, this.geometry)) {
+						unchanged[column] = false;
+						break;
+					}
+				}
+			}
+		}
+		return unchanged;
+	}
+
+	/**
+	 * Play a column in a state and check that the result has a given percept (the visible squares are computed as in predict and putPiecePlayer)
+	 * @param state the state
+	 * @param column the column played
+	 * @param percept the visible squares of the percept
+	 * @param unchanged the result of unchangedOutside(percept)
+	 * @param allVisible true if all the squares are visible in the percept (the game is over)
+	 * @return the resulting state, or null if its percept is not the given one
+	 */
+	private GameState observe(GameState state, int column, byte[] percept, boolean[] unchanged, boolean allVisible) {
+		//the percept of a game which goes on differs from the visible squares of the belief state only in the column played
+		if(!unchanged[column] && !allVisible)
+			return null;
+		GameState copy = state.copy();
+		copy.putPiece(column);
+		if(copy.isGameOver())
+			return allVisible? copy: null;
+		if(!unchanged[column])
+			return null;
+		boolean isVisible = copy.isFull(column);
+		if(isVisible != BeliefState.isVisible(this.geometry.rows - 1, column, percept, this.geometry))
+			return null;
+		for(int row = this.geometry.rows - 2; row > -1; row--) {
+			isVisible = isVisible || copy.content(row, column) == 2;
+			if(isVisible != BeliefState.isVisible(row, column, percept, this.geometry))
+				return null;
+		}
+		return copy;
+	}
+
+	private static boolean allVisible(byte[] tab, Geometry geometry) {
+		for(int row = 0; row < geometry.rows; row++) {
+			for(int column = 0; column < geometry.columns; column++) {
+				if(!BeliefState.isVisible(row, column, tab, geometry))
+					return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -338,38 +586,142 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	 * @return copy of the belief state
 	 */
 	public BeliefState copy() {
-		BeliefState bs = new BeliefState();
+		BeliefState bs = new BeliefState(this.geometry);
 		for(GameState state: this.beliefState) {
 			bs.add(state.copy());
 		}
-		for(int i = 0; i < 6; i++) {
+		for(int i = 0; i < this.isVisible.length; i++) {
 			bs.isVisible[i] = this.isVisible[i];
 		}
 		bs.played = this.played;
 		return bs;
 	}
 	
+	/**
+	 * Make a snapshot of the belief state, which can be restored later with setStates. The snapshot shares the states of the belief state instead of copying them:
+	 * this is safe as long as no state is added to the belief state after the snapshot (the belief states of a game are replaced by setStates, and restart starts a new set of states).
+	 * @return snapshot of the belief state
+	 */
+	public BeliefState snapshot() {
+		BeliefState bs = new BeliefState(this.geometry, this.isVisible, this.played);
+		bs.beliefState = this.beliefState;
+		bs.occupancy = this.occupancy;
+		return bs;
+	}
+
+	/**
+	 * Make the belief state obtained by reflecting the board horizontally (column c becomes column columns - 1 - c), both for the states and for the visible squares
+	 * @return the mirrored belief state
+	 */
+	public BeliefState mirror() {
+		BeliefState bs = new BeliefState(this.geometry);
+		for(GameState state: this.beliefState) {
+			bs.add(state.mirror());
+		}
+		for(int row = 0; row < this.geometry.rows; row++) {
+			for(int column = 0; column < this.geometry.columns; column++) {
+				BeliefState.setVisible(row, this.geometry.mirror(column), this.isVisible(row, column), bs.isVisible, this.geometry);
+			}
+		}
+		bs.played = this.played;
+		if(this.occupancy != null) {
+			bs.occupancy = new double[this.occupancy.length];
+			for(int row = 0; row < this.geometry.rows; row++) {
+				for(int column = 0; column < this.geometry.columns; column++) {
+					int square = 2 * (row * this.geometry.columns + column);
+					int mirror = 2 * (row * this.geometry.columns + this.geometry.mirror(column));
+					bs.occupancy[mirror] = this.occupancy[square];
+					bs.occupancy[mirror + 1] = this.occupancy[square + 1];
+				}
+			}
+			bs.occupancy[bs.occupancy.length - 1] = this.occupancy[this.occupancy.length - 1];
+		}
+		return bs;
+	}
+	
+	/**
+	 * Return the canonical form of the belief state under horizontal reflection i.e., the smallest of the belief state and of its mirror.
+	 * A belief state and its mirror have the same canonical form, so it can be used as a key to share the values of mirrored belief states.
+	 * The mirror is only built when it is the canonical form or when the belief state cannot be told apart from it by its visible squares and its smallest state (see compareToMirror),
+	 * and the canonical form is kept until the belief state changes, so the search computes it once per belief state.
+	 * @return this belief state if it is canonical, and its mirror otherwise (the moves of the mirror are given by Geometry.mirror(column))
+	 */
+	public BeliefState canonical() {
+		if(this.canonical == null) {
+			if(this.compareToMirror() <= 0) {
+				this.canonical = this;
+			}
+			else {
+				BeliefState mirror = this.mirror();
+				mirror.canonical = mirror;
+				this.canonical = mirror;
+			}
+		}
+		return this.canonical;
+	}
+	
+	/**
+	 * Compare the belief state to its mirror as compareTo does. The visible squares are compared first, then the smallest states, and the mirror is built only if they are the same
+	 * (a belief state and its mirror have the same number of pieces played and the same number of states)
+	 * @return a negative number, zero or a positive number if the belief state is smaller than, equal to or greater than its mirror
+	 */
+	private int compareToMirror() {
+		for(int i = 0; i < this.isVisible.length; i++) {
+			byte mirrored = this.mirroredVisible(i);
+			if(this.isVisible[i] != mirrored)
+				return this.isVisible[i] > mirrored? 1: -1;
+		}
+		if(!this.beliefState.isEmpty()) {
+			GameState smallest = null;
+			for(GameState state: this.beliefState) {
+				GameState mirror = state.mirror();
+				if(smallest == null || mirror.compareTo(smallest) < 0)
+					smallest = mirror;
+			}
+			int comparison = this.beliefState.first().compareTo(smallest);
+			if(comparison != 0)
+				return comparison;
+		}
+		return this.compareTo(this.mirror());
+	}
+	
+	//byte index of the visible squares of the mirror (see setVisible)
+	private byte mirroredVisible(int index) {
+		int bits = 0;
+		int squares = this.geometry.rows * this.geometry.columns;
+		for(int pos = 8 * index; pos < Math.min(squares, 8 * index + 8); pos++) {
+			if(this.isVisible(pos / this.geometry.columns, this.geometry.mirror(pos % this.geometry.columns)))
+				bits |= 1 << (pos % 8);
+		}
+		return (byte) (bits - 128);
+	}
+	
 	public Iterator<GameState> iterator(){
 		return this.beliefState.iterator();
 	}
 	
+	/**
+	 * Return the number of pieces played since the beginning of the game
+	 * @return number of pieces played
+	 */
+	public int getPlayed() {
+		return this.played;
+	}
+	
 	/**
 	 * Return the list of the column where a piece can be played (columns which are not full)
 	 * @return
 	 */
-	public ArrayList<Integer> getMoves(){
+	public MoveList getMoves(){
+		MoveList moves = new MoveList();
 		if(!this.isGameOver()) {
-			ArrayList<Integer> moves = new ArrayList<Integer>();
 			GameState state = this.beliefState.first();
-			for(int i = 0; i < 7; i++) {
+			for(int i = 0; i < this.geometry.columns; i++) {
 				if(!state.isFull(i))
 					moves.add(i);
 			}
-			return moves;
-		}
-		else {
-			return new ArrayList<Integer>();
 		}
+		return moves;
 	}
 	
 	/**
@@ -381,22 +733,28 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	}
 	
 	public boolean isVisible(int row, int column) {
-		int pos = row * 7 + column;
+		int pos = row * this.geometry.columns + column;
 		int index = pos / 8;
 		pos = pos % 8;
 		return ((this.isVisible[index] + 128) >> pos) % 2 == 1;
 	}
 	
 	public void setVisible(int row, int column, boolean val) {
-		int pos = row * 7 + column;
+		int pos = row * this.geometry.columns + column;
 		int index = pos / 8;
 		pos = pos % 8;
 		int delta = ((val? 1: 0) - (this.isVisible(row, column)? 1: 0)) << pos;
 		this.isVisible[index] = (byte) (this.isVisible[index] + delta);
+		this.canonical = null;
 	}
 	
-	public static void setVisible(int row, int column, boolean val, byte[] tab) {
-		int pos = row * 7 + column;
+	public static boolean isVisible(int row, int column, byte[] tab, Geometry geometry) {
+		int pos = row * geometry.columns + column;
+		return ((tab[pos / 8] + 128) >> (pos % 8)) % 2 == 1;
+	}
+
+	public static void setVisible(int row, int column, boolean val, byte[] tab, Geometry geometry) {
+		int pos = row * geometry.columns + column;
 		int index = pos / 8;
 		pos = pos % 8;
 		int posValue = tab[index] + 128;
@@ -404,6 +762,27 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 		tab[index] = (byte) (posValue + delta - 128);
 	}
 	
+	/**
+	 * Compute the percept corresponding to some visible squares, which is the key of a belief state in a Results object.
+	 * Each byte of the visible squares gives a character (its 7 lower bits), and the highest bits of 16 consecutive bytes are gathered in one more character.
+	 * @param tab the visible squares (1 bit per square)
+	 * @return String that describe what is visible on the board for player 2
+	 */
+	public static String percept(byte[] tab) {
+		String s = "";
+		char c = 0;
+		for(int i = 0; i < tab.length; i++) {
+			int val = tab[i] + 128;
+			s += ((char)(val % 128));
+			c += (val / 128) << (i % 16);
+			if(i % 16 == 15 || i == tab.length - 1) {
+				s += c;
+				c = 0;
+			}
+		}
+		return s;
+	}
+	
 	/**
 	 * Check if the game is over in all state of the belief state. Note that when the game is over, the board is revealed and the environment becomes observable.
 	 * @return true if the game is over, and false otherwise
@@ -428,17 +807,19 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	
 	public void restart() {
 		this.beliefState = new TreeSet<GameState>();
-		this.isVisible = new byte[6];
-		for(int i = 0; i < 6; i++) {
+		this.occupancy = null;
+		this.isVisible = new byte[this.geometry.visibleBytes];
+		for(int i = 0; i < this.isVisible.length; i++) {
 			this.isVisible[i] = Byte.MIN_VALUE;
 		}
 		this.played = 0;
+		this.canonical = null;
 	}
 	
 	public String toString() {
 		String s = "BeliefState: size = " + this.beliefState.size() + " played = " + this.played + "\n";
-		for(int row = 5; row > -1; row--) {
-			for(int column = 0; column < 7; column++) {
+		for(int row = this.geometry.rows - 1; row > -1; row--) {
+			for(int column = 0; column < this.geometry.columns; column++) {
 				s += this.isVisible(row, column)? "1": "0";
 			}
 			s += "\n";
@@ -452,7 +833,7 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 	public int compareTo(BeliefState bs) {
 		if(this.played != bs.played)
 			return this.played > bs.played? 1: -1;
-		for(int i = 0; i < 6; i++) {
+		for(int i = 0; i < this.isVisible.length; i++) {
 			if(this.isVisible[i] != bs.isVisible[i])
 				return this.isVisible[i] > bs.isVisible[i]? 1: -1;
 		}
@@ -490,87 +871,53 @@ class BeliefState implements Comparable<BeliefState>, Iterable<GameState>{
 
 
 
+/**
+ * Class used to read a contingency plan built by the search. The nodes of the plan are stored in a NodeArena, so a ContingencyPlan is only a view over one of them
+ * and it remains valid until the arena is cleared (i.e., until the next search performed by the same thread).
+ */
 class ContingencyPlan{
-	Integer action;
-	//to each belief state that is coming from the action we associate a contingency plan 
-	HashMap<BeliefState, ContingencyPlan> plan=new HashMap<>();
-	double heuristic_value;
-	boolean is_leaf;
-
-	public ContingencyPlan() {
-		this.heuristic_value = Double.NEGATIVE_INFINITY;
-		this.is_leaf = true;
-	}
-
-	public ContingencyPlan(Integer action, HashMap<BeliefState, ContingencyPlan> plan, double heuristic_value) {
-		this.action = action;
-		this.plan = plan;
-		this.heuristic_value = heuristic_value;
-		this.is_leaf = false;
-	}
+	private NodeArena arena;
+	private int node;
 
-	public ContingencyPlan(Integer action) {
-		this.action = action;
-		this.plan = new HashMap<BeliefState, ContingencyPlan>();
-		this.is_leaf = false;
-	}
-
-	public void setIs_leaf(boolean is_leaf) {
-		this.is_leaf = is_leaf;
-	}
-	
-	public void setAction(Integer action) {
-		this.action = action;
-	}
-	
-	public void setPlan(HashMap<BeliefState, ContingencyPlan> plan) {
-		this.plan = plan;
-	}
-	
-	public void setHeuristicValue(double heuristic_value) {
-		this.heuristic_value = heuristic_value;
+	public ContingencyPlan(NodeArena arena, int node) {
+		this.arena = arena;
+		this.node = node;
 	}
 	
 	public boolean getIsLeaf() {
-		return this.is_leaf;
+		return this.arena.isLeaf(this.node);
 	}
 	
+	/**
+	 * Return the action of the plan
+	 * @return the column to play, or null if the plan does not contain any action
+	 */
 	public Integer getAction() {
-		return action;
+		int action = this.arena.action(this.node);
+		return action == NodeArena.NO_ACTION? null: action;
 	}
 	
-	public HashMap<BeliefState, ContingencyPlan> getPlan() {
+	/**
+	 * Return the plans to follow for each belief state that may result from the action
+	 * @return the list of the subplans
+	 */
+	public ArrayList<ContingencyPlan> getPlan() {
+		ArrayList<ContingencyPlan> plan = new ArrayList<ContingencyPlan>();
+		for(int child = this.arena.firstChild(this.node); child != NodeArena.NONE; child = this.arena.nextSibling(child)) {
+			plan.add(new ContingencyPlan(this.arena, child));
+		}
 		return plan;
 	}
 	
 	public double getHeuristicValue() {
-		return this.heuristic_value;
-	}
-
-	public void add(BeliefState state, ContingencyPlan subplan) {
-		this.plan.put(state, subplan);
+		return this.arena.heuristicValue(this.node);
 	}
 	
-	public void isLeaf() {
-		this.is_leaf = true;
-	}	
-	
 	public double heuristic() {
 		//this value should not be used in computations, it is a warning value
-		if (this.is_leaf)
+		if (this.arena.isLeaf(this.node))
 			return Double.NEGATIVE_INFINITY;
-		
-		double heuristic_value = 0.;
-		
-		for (BeliefState state : this.plan.keySet()) {
-			if (this.plan.get(state).is_leaf)
-				heuristic_value += AI.heuristic(state);
-				
-			else
-				heuristic_value += this.plan.get(state).heuristic();
-				
-		}
-		return heuristic_value;
+		return this.arena.subplanValue(this.node);
 	}
 }
 
@@ -578,6 +925,8 @@ class ContingencyPlan{
 public class AI{
 	//maximum depth of search of the algorithm (it is better in terms of running time if it is set on 1 or 2). It also works with higher depths but the computation time will increase and the statistics of the AI will slightly decrease.
 	final static int DEPTH = 2;
+	//number of moves of the AI considered when the position is fully known (the search of a single game state is much cheaper than the one of a belief state)
+	final static int SOLVER_DEPTH = 3;
 	/* heuristic table that will be used in the future computations
 	 * each entry of the table is the number of lines of 4 that the case is on
 	 * for example, for the entry in the upper left corner there is the number 3 because there are three 4-lines starting at 0
@@ -602,6 +951,12 @@ public class AI{
     final static double cweights[] = new double[] {1.1, 1., 0.9, 0.8, 0.9, 1, 1.1}; 
     //weights for rows : We put weight on pawns that are positioned at the bottom of the board because they are more likely to form a 4-disc line in early game.
     final static double rweights[] = new double[] {1.2, 1., 0.7, 0.5, 0.3, 0.1};    
+    
+    //evaluator used by default to order the moves and to evaluate the leaves
+    final static Evaluator DEFAULT_EVALUATOR = new HeuristicEvaluator();
+    
+    //search context (arena of the plan nodes and move ordering tables) of each thread, it is reset at the beginning of each search
+    final static ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
 		   										  
 	public AI() {
 	}
@@ -612,6 +967,9 @@ public class AI{
 	 *  @return the heuristic value of the game state 
 	 */
 	public static double heuristic(GameState game) {
+		if (game.geometry() != Geometry.DEFAULT)
+			return heuristic(game, game.geometry());
+		
 		int heuristic_value = 0;						   
 		
 		//We consider each row...
@@ -637,6 +995,50 @@ public class AI{
 	}
 	
 	
+	/** Performs the computation of the heuristic value of a game state of any geometry. The computation is the same as for the standard game,
+	 *  but the tables are the ones generated by the geometry and the blocked lines are counted with the windows of the geometry instead of scan.
+	 *  @param game the game state which is currently considered
+	 *  @param geometry the geometry of the game
+	 *  @return the heuristic value of the game state 
+	 */
+	public static double heuristic(GameState game, Geometry geometry) {
+		int heuristic_value = 0;
+		
+		for (int row = 0; row < geometry.rows; row++) {
+			for (int column = 0; column < geometry.columns; column++) {
+				int content = game.content(row, column);
+				if (content == 2)
+					heuristic_value += geometry.cweights[column] * geometry.rweights[row] * (geometry.heuristic[row][column] - scan(game, geometry, row, column, 1));
+				if (content == 1)
+					heuristic_value -= geometry.cweights[column] * geometry.rweights[row] * (geometry.heuristic[row][column] - scan(game, geometry, row, column, 2));
+			}
+		}
+		return game.proba()*((double) heuristic_value);
+	}
+	
+	/**
+	 * Computes the number of windows of k squares containing a given square that are blocked by a piece of the opponent, for any geometry (see scan(GameState, int, int, int) for the standard game)
+	 * @param game the game state we consider
+	 * @param geometry the geometry of the game
+	 * @param row the row considered
+	 * @param column the column considered
+	 * @param opponent if 1, the computation is made for our AI. Otherwise, it is the reverse
+	 * @return the number of windows containing the square that are blocked by an opponent piece
+	 */
+	public static int scan(GameState game, Geometry geometry, int row, int column, int opponent) {
+		int cpt = 0;
+		for (int[] window : geometry.windows[row][column]) {
+			for (int square : window) {
+				if (game.content(square / geometry.columns, square % geometry.columns) == opponent) {
+					cpt++;
+					break;
+				}
+			}
+		}
+		return cpt;
+	}
+	
+	
 	/** Performs the computation of a heuristic value for a given BeliefState : we sum the heuristic value of each game state composing the belief state
 	 *  @param currentBeliefState the belief state which is currently considered
 	 *  @return the heuristic value of the belief state 
@@ -665,102 +1067,222 @@ public class AI{
 	}
 	
 	/**
-	 * Performs the computation of a heuristic value for a given hash map object : we sum the heuristic value of each contingency plan
-	 * @param hmap a hash map that maps belief states to contingency plans
-	 * @return a utility value
+	 * Computes the value of a belief state during a search with a given evaluator. The values are cached by canonical form, so a belief state and its mirror are evaluated only once.
+	 * The value of the canonical form is used for both on purpose: AI.heuristic(GameState) truncates its terms in the order of the rows, so a board and its mirror may differ by a few units,
+	 * and a move may then be chosen instead of its mirror in a near tie, which does not change the strength of the search.
+	 * @param state the belief state which is currently considered
+	 * @param evaluator the evaluator (the ordering or the leaf evaluator of the context)
+	 * @param context the context of the search
+	 * @return the value of the belief state
 	 */
-	public static double heuristic(HashMap<BeliefState, ContingencyPlan> hmap) {
-		double heuristic_value = 0.;
-		
-		if (hmap.isEmpty())
-			return heuristic_value;
-		
-		for (BeliefState state : hmap.keySet()) {
-			
-			//If the associated contingency plan is for a belief state that is a leaf... we won't dive deeper in the recursion
-			if (hmap.get(state).is_leaf)
-				heuristic_value += heuristic(state);
-			
-			//...else we follow the recursion
-			else
-				heuristic_value += hmap.get(state).heuristic();
+	public static double heuristic(BeliefState state, Evaluator evaluator, SearchContext context) {
+		return heuristic(state.canonical(), null, evaluator, context);
+	}
+	
+	/**
+	 * Computes the value of a belief state during a search from its canonical form, the value being taken from the cache, from the values requested in advance or from the evaluator
+	 * @param canonical the canonical form of the belief state
+	 * @param requested the values requested with request, or null
+	 * @param evaluator the evaluator (the ordering or the leaf evaluator of the context)
+	 * @param context the context of the search
+	 * @return the value of the belief state
+	 */
+	static double heuristic(BeliefState canonical, TreeMap<BeliefState, CompletableFuture<Double>> requested, Evaluator evaluator, SearchContext context) {
+		ExploredSet evaluations = context.evaluations(evaluator);
+		Double value = evaluations.get(canonical);
+		if (SearchStats.ENABLED)
+			context.stats.evaluation(value != null, canonical);
+		if (value == null) {
+			CompletableFuture<Double> future = requested == null? null: requested.get(canonical);
+			value = future != null? future.join(): evaluator.evaluate(canonical);
+			evaluations.put(canonical, value);
 		}
-		return heuristic_value;
+		return value;
 	}
 	
+	/**
+	 * Requests the values of belief states before they are used, so that an asynchronous evaluator (see Evaluator.evaluateAsync) can evaluate them together while the search goes on.
+	 * Each canonical form which is not in the cache is requested once, and the values are then read in the same order as without request, so the values of the search do not change.
+	 * @param states the belief states
+	 * @param canonicals list to which the canonical form of each belief state is added, in the order of states
+	 * @param evaluator the evaluator (the ordering or the leaf evaluator of the context)
+	 * @param context the context of the search
+	 * @return the requested values, keyed by canonical form
+	 */
+	static TreeMap<BeliefState, CompletableFuture<Double>> request(Iterable<BeliefState> states, ArrayList<BeliefState> canonicals, Evaluator evaluator, SearchContext context) {
+		ExploredSet evaluations = context.evaluations(evaluator);
+		TreeMap<BeliefState, CompletableFuture<Double>> requested = new TreeMap<BeliefState, CompletableFuture<Double>>();
+		for (BeliefState state : states) {
+			BeliefState canonical = state.canonical();
+			canonicals.add(canonical);
+			if (evaluations.get(canonical) == null && !requested.containsKey(canonical))
+				requested.put(canonical, evaluator.evaluateAsync(canonical));
+		}
+		return requested;
+	}
 	
 	/**
-	 * Sorts (Insertion Sort) the ArrayList<Integer> moves in decreasing order such that the first move of the BeliefState state leads to a state with the highest heuristic value.
-	 * @param moves ArrayList of integers which are the moves that are allowed in the current situation of the belief state
+	 * Computes the value of a Results object during a search with a given evaluator, using the cached values of its belief states
+	 * @param predictions the Results object that we are dealing with
+	 * @param evaluator the evaluator (the ordering or the leaf evaluator of the context)
+	 * @param context the context of the search
+	 * @return the value of the Results object
+	 */
+	public static double heuristic(Results predictions, Evaluator evaluator, SearchContext context) {
+		double res = 0.;
+		for (BeliefState beliefState : predictions) {
+			res += heuristic(beliefState, evaluator, context);
+		}
+		return res;
+	}
+	
+	/**
+	 * Select the evaluators used by the searches of the calling thread
+	 * @param ordering the evaluator used to order the moves (it can be cheaper than the other one)
+	 * @param leaf the evaluator used for the leaves of the search
+	 */
+	public static void setEvaluators(Evaluator ordering, Evaluator leaf) {
+		SearchContext context = CONTEXT.get();
+		context.orderingEvaluator = ordering;
+		context.leafEvaluator = leaf;
+	}
+	
+	/**
+	 * Computes the results of an action of the player during a search (the time spent is recorded in the statistics of the search)
+	 * @param state the belief state in which the action is performed
+	 * @param column the column played
+	 * @param context the context of the search
+	 * @return the results of the action
+	 */
+	static Results putPiecePlayer(BeliefState state, int column, SearchContext context) {
+		if (!SearchStats.ENABLED)
+			return state.putPiecePlayer(column);
+		long start = System.nanoTime();
+		Results results = state.putPiecePlayer(column);
+		context.stats.putPiecePlayer(System.nanoTime() - start);
+		return results;
+	}
+	
+	/**
+	 * Computes the results of the action of the opponent during a search (the time spent is recorded in the statistics of the search)
+	 * @param state the belief state in which the opponent plays
+	 * @param context the context of the search
+	 * @return the results of the action of the opponent
+	 */
+	static Results predict(BeliefState state, SearchContext context) {
+		if (!SearchStats.ENABLED)
+			return state.predict();
+		long start = System.nanoTime();
+		Results results = state.predict();
+		context.stats.predict(System.nanoTime() - start);
+		return results;
+	}
+	
+	/**
+	 * Sorts the moves in decreasing order such that the first move of the BeliefState state leads to a state with the highest value for the ordering evaluator.
+	 * Each move is evaluated only once: its value is stored as its score and the results of the move are stored in children (indexed by column) so that the search can reuse them.
+	 * The killer moves and the history of the search are then used to complete the ordering.
+	 * @param moves list of the moves that are allowed in the current situation of the belief state
 	 * @param state belief state that is currently considered
+	 * @param children array in which the results of each move are stored
+	 * @param depth_of_prediction depth of the belief state in the search
+	 * @param context the context of the search
 	 */
-	public static void sort_moves(ArrayList<Integer> moves, BeliefState state) {
-		int n = moves.size();
-		
-		for (int i = 0; i < n; i++) {
-			
-			Integer key = moves.get(i);
-			double key_value = heuristic(state.copy().putPiecePlayer(key));
-			int j = i - 1;
-			
-			while (j >= 0 && heuristic(state.copy().putPiecePlayer(moves.get(j))) < key_value) {
-				
-				moves.set(j+1, moves.get(j));
-				j--;
-			}
-			moves.set(j + 1, key);
+	public static void sort_moves(MoveList moves, BeliefState state, Results[] children, int depth_of_prediction, SearchContext context) {
+		ArrayList<BeliefState> results = new ArrayList<BeliefState>();
+		for (int i = 0; i < moves.size(); i++) {
+			int column = moves.get(i);
+			children[column] = putPiecePlayer(state, column, context);
+			for (BeliefState result : children[column])
+				results.add(result);
+		}
+		//the values of all the moves are requested before the first one is read
+		ArrayList<BeliefState> canonicals = new ArrayList<BeliefState>();
+		TreeMap<BeliefState, CompletableFuture<Double>> requested = request(results, canonicals, context.orderingEvaluator, context);
+		int k = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			double res = 0.;
+			for (BeliefState result : children[moves.get(i)])
+				res += heuristic(canonicals.get(k++), requested, context.orderingEvaluator, context);
+			moves.setScore(i, res);
 		}
+		context.ordering.order(moves, depth_of_prediction, state.getPlayed());
 	}
 	
 	/**
 	 * Performs the AndOrSearch algorithm at an Or-node level
 	 * @param currentBeliefState The current belief state of the game
 	 * @param depth_of_prediction Depth at which we should stop the search
-	 * @return a ContingencyPlan object which is composed of an action and a hash table which maps belief states to contingency plans
+	 * @param context the arena in which the nodes of the plan are stored and the move ordering tables
+	 * @return the handle of a node of the arena which is composed of an action and of the contingency plans of the belief states resulting from this action, or NodeArena.NONE if there is no plan
 	 */
-	public static ContingencyPlan orSearch(BeliefState currentBeliefState, int depth_of_prediction) {
-		HashMap<BeliefState, ContingencyPlan> subplan;
+	public static int orSearch(BeliefState currentBeliefState, int depth_of_prediction, SearchContext context) {
+		NodeArena arena = context.arena;
 		//the plan resulting from the and-search
-		ContingencyPlan plan_res;
+		int plan_res;
 		//the plan that will be returned and which has maximum heuristic value
-		ContingencyPlan max_plan = new ContingencyPlan();
+		int max_plan = NodeArena.NONE;
+		double max_value = Double.NEGATIVE_INFINITY;
+		
+		if (SearchStats.ENABLED)
+			context.stats.orNode(depth_of_prediction, currentBeliefState);
 		
 		//To stop the search when the maximum depth is reached or if the game is over, we return an empty plan 
 		if (depth_of_prediction > DEPTH || currentBeliefState.isGameOver() || currentBeliefState.isFull()) 
-			return new ContingencyPlan();
+			return arena.newNode(NodeArena.NO_ACTION, true, Double.NEGATIVE_INFINITY);
 		
-		ArrayList<Integer> moves = currentBeliefState.getMoves();
+		MoveList moves = currentBeliefState.getMoves();
 		
 		if (moves.size() == 1)
-			return new ContingencyPlan(moves.get(0));
+			return arena.newNode(moves.get(0), false, 0.);
+		
+		//if the belief state (or its mirror) has already been searched at this depth, we reuse its plan
+		BeliefState canonical = currentBeliefState.canonical();
+		boolean mirrored = canonical != currentBeliefState;
+		int cached = context.transpositions.get(canonical, mirrored, depth_of_prediction, arena);
+		if (SearchStats.ENABLED)
+			context.stats.transposition(cached != TranspositionTable.MISS);
+		if (cached != TranspositionTable.MISS)
+			return cached;
 		
 		//we sort the moves in the decreasing order such that the most promising option is provided first
-		sort_moves(moves, currentBeliefState);
+		Results[] children = new Results[MoveList.CAPACITY];
+		sort_moves(moves, currentBeliefState, children, depth_of_prediction, context);
 		
 		//We consider each possible action...
-		for (Integer action : moves) {
+		for (int i = 0; i < moves.size(); i++) {
+			int action = moves.get(i);
 			
-			//we perform the and-or search algorithm for the and-node which results of the action of putting the piece action on the board
-			subplan = andSearch(currentBeliefState.copy().putPiecePlayer(action), depth_of_prediction+1);
+			//nodes allocated from this mark belong to the plan of this action, they can be released if the plan is not kept
+			int mark = arena.size();
+			plan_res = arena.newNode(action, false, 0.);
 			
-			if (subplan != null) {
+			//we perform the and-or search algorithm for the and-node which results of the action of putting the piece action on the board
+			if (andSearch(children[action], depth_of_prediction+1, plan_res, context)) {
 				
-				if (subplan.isEmpty()) //We reached the maximum depth...
-					plan_res = new ContingencyPlan(action, subplan, heuristic(currentBeliefState.copy().putPiecePlayer(action)));
+				if (!arena.hasChildren(plan_res)) //We reached the maximum depth, the value of the action is the one computed to sort the moves if the leaves are evaluated in the same way
+					arena.setHeuristicValue(plan_res, context.orderingEvaluator == context.leafEvaluator? moves.score(i): heuristic(children[action], context.leafEvaluator, context));
 				else
-					plan_res = new ContingencyPlan(action, subplan, heuristic(subplan));
+					arena.setHeuristicValue(plan_res, arena.subplanValue(plan_res));
 				
 				//if the resulting plan has higher heuristic value than the current maximum contingency plan... we update the maximum plan
-				if (plan_res.getHeuristicValue() > max_plan.getHeuristicValue())
+				if (arena.heuristicValue(plan_res) > max_value) {
 					max_plan = plan_res;
+					max_value = arena.heuristicValue(plan_res);
+					continue;
+				}
 			}
 			
+			//the plan is discarded, if it is the last allocated plan its nodes are released
+			if (max_plan < mark)
+				arena.release(mark);
 		}
 		
-		//if we do not find a better plan than the empty plan... we return null value
-		if (max_plan.getHeuristicValue() == Double.NEGATIVE_INFINITY) {
-			return null;
-		}
+		if (max_plan != NodeArena.NONE)
+			context.ordering.update(arena.action(max_plan), depth_of_prediction, DEPTH - depth_of_prediction, currentBeliefState.getPlayed());
+		context.transpositions.put(canonical, mirrored, depth_of_prediction, arena, max_plan);
+		
+		//if we do not find a better plan than the empty plan... we return no plan
 		return max_plan;
 	}
 
@@ -769,16 +1291,21 @@ public class AI{
 	 * performs the AndOrSearch algorithm at an And-level node
 	 * @param currentBeliefStates Results object that is a set of belief states that results from a particular action
 	 * @param depth_of_prediction Depth at which we should stop the search
-	 * @return A hash table that maps to each belief state that may exist, after performing a particular action, a contingency plan
+	 * @param plan handle of the node to which a contingency plan is attached for each belief state that may exist after performing the action
+	 * @param context the arena in which the nodes of the plan are stored and the move ordering tables
+	 * @return false if one of the belief states has no plan, and true otherwise (the node has no subplan if the maximum depth is reached)
 	 */
-	public static HashMap<BeliefState, ContingencyPlan> andSearch(Results currentBeliefStates, int depth_of_prediction) {
+	public static boolean andSearch(Results currentBeliefStates, int depth_of_prediction, int plan, SearchContext context) {
+		NodeArena arena = context.arena;
+		int subplan;
 		
-		HashMap<BeliefState, ContingencyPlan> hmap = new HashMap<BeliefState,ContingencyPlan>();
-		ContingencyPlan subplan;
-		
-		//If the Results object is empty or if the maximum depth is reached, we return an empty hash map
+		//If the Results object is empty or if the maximum depth is reached, we do not add any subplan
 		if (currentBeliefStates == null || depth_of_prediction > DEPTH) 
-			return new HashMap<BeliefState,ContingencyPlan>();
+			return true;
+		
+		//the belief states predicted are the leaves of the search, their values are requested together
+		if (depth_of_prediction + 1 > DEPTH)
+			return andSearchLeaves(currentBeliefStates, depth_of_prediction, plan, context);
 		
 		//for each belief state in the Results object...
 		for (BeliefState state : currentBeliefStates) {
@@ -786,8 +1313,11 @@ public class AI{
 			if (state.isGameOver() || state.isFull())
 				continue;
 			
-			//We predict the move of the other player
-			Results predictions = state.copy().predict();
+			if (SearchStats.ENABLED)
+				context.stats.andNode(depth_of_prediction, state);
+			
+			//We predict the move of the other player (predict does not modify the belief state, so there is no need to copy it)
+			Results predictions = predict(state, context);
 			
 			//If there are no predictions left... we skip this iteration
 			if (predictions == null) 
@@ -797,26 +1327,127 @@ public class AI{
 			for (BeliefState substate : predictions) {
 				
 				//we retrieve the subplan associated with this substate
-				subplan = orSearch(substate, depth_of_prediction+1);
-				if (subplan == null)
-					return null;
+				subplan = orSearch(substate, depth_of_prediction+1, context);
+				if (subplan == NodeArena.NONE)
+					return false;
 				
-				//we add the plan if it is not null
-				hmap.put(substate, subplan);
+				//we add the plan, a leaf is valued by the heuristic of its belief state
+				arena.addChild(plan, subplan, arena.isLeaf(subplan)? heuristic(substate, context.leafEvaluator, context): arena.subplanValue(subplan));
 			}
 		}
-		return hmap;
+		return true;
 	}
 	
 	
+	/**
+	 * performs the AndOrSearch algorithm at an And-level node whose predicted belief states are leaves of the search (see andSearch). The plans of all the predicted belief states are computed first,
+	 * then the values of the leaves are requested together (see request) and the subplans are added in the same order as andSearch does.
+	 * @param currentBeliefStates Results object that is a set of belief states that results from a particular action
+	 * @param depth_of_prediction Depth at which we should stop the search
+	 * @param plan handle of the node to which a contingency plan is attached for each belief state that may exist after performing the action
+	 * @param context the arena in which the nodes of the plan are stored and the move ordering tables
+	 * @return false if one of the belief states has no plan, and true otherwise
+	 */
+	static boolean andSearchLeaves(Results currentBeliefStates, int depth_of_prediction, int plan, SearchContext context) {
+		NodeArena arena = context.arena;
+		ArrayList<BeliefState> substates = new ArrayList<BeliefState>();
+		ArrayList<Integer> subplans = new ArrayList<Integer>();
+		
+		for (BeliefState state : currentBeliefStates) {
+			
+			if (state.isGameOver() || state.isFull())
+				continue;
+			
+			if (SearchStats.ENABLED)
+				context.stats.andNode(depth_of_prediction, state);
+			
+			Results predictions = predict(state, context);
+			if (predictions == null) 
+				continue;
+			
+			for (BeliefState substate : predictions) {
+				int subplan = orSearch(substate, depth_of_prediction+1, context);
+				if (subplan == NodeArena.NONE)
+					return false;
+				substates.add(substate);
+				subplans.add(subplan);
+			}
+		}
+		
+		ArrayList<BeliefState> canonicals = new ArrayList<BeliefState>();
+		TreeMap<BeliefState, CompletableFuture<Double>> requested = request(substates, canonicals, context.leafEvaluator, context);
+		for (int i = 0; i < subplans.size(); i++) {
+			int subplan = subplans.get(i);
+			arena.addChild(plan, subplan, arena.isLeaf(subplan)? heuristic(canonicals.get(i), requested, context.leafEvaluator, context): arena.subplanValue(subplan));
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Computes the contingency plan to follow in the current situation. The plan is stored in the arena of the calling thread, which is cleared at the beginning of each search.
+	 * @param game the current belief state
+	 * @return the contingency plan, or null if there is no plan
+	 */
+	public static ContingencyPlan findPlan(BeliefState game) {
+		SearchContext context = CONTEXT.get();
+		context.newSearch();
+		context.orderingEvaluator.prepare(game);
+		context.leafEvaluator.prepare(game);
+		SearchDecisionEvent event = new SearchDecisionEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int plan = orSearch(game, 1, context);
+		recordDecision(context, event, start, plan == NodeArena.NONE? NodeArena.NO_ACTION: context.arena.action(plan), game.size());
+		return plan == NodeArena.NONE? null: new ContingencyPlan(context.arena, plan);
+	}
+	
+	/**
+	 * Record the statistics of a decision in the metrics of the process and in its JFR event (if statistics are enabled)
+	 * @param context the context of the search
+	 * @param event the event of the decision, begun before the search
+	 * @param start the time of the beginning of the search (System.nanoTime)
+	 * @param action the column chosen, or NodeArena.NO_ACTION if there is no plan
+	 * @param size the number of states of the belief state searched
+	 */
+	private static void recordDecision(SearchContext context, SearchDecisionEvent event, long start, int action, int size) {
+		if (SearchStats.ENABLED) {
+			context.stats.decisionNanos = System.nanoTime() - start;
+			SearchMetrics.record(context.stats);
+			if (event.shouldCommit()) {
+				event.set(context.stats, action, size);
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Return the statistics of the last search performed by the calling thread
+	 * @return the statistics of the search
+	 */
+	public static SearchStats lastStats() {
+		return CONTEXT.get().stats;
+	}
+	
 	/**
 	 * Returns the best action to take in the current situation
 	 * @param game the current game state
 	 * @return an integer which represents the column to play
 	 */
 	public static int findNextMove(BeliefState game) {
-		ContingencyPlan plan = orSearch(game,1);
-        return plan.action;
+		//if the position is fully known, there is no need to keep track of the belief states
+		if (game.size() == 1) {
+			SearchContext context = CONTEXT.get();
+			context.newSearch();
+			SearchDecisionEvent event = new SearchDecisionEvent();
+			event.begin();
+			long start = System.nanoTime();
+			int move = context.solver.findNextMove(game.iterator().next());
+			recordDecision(context, event, start, move, 1);
+			return move;
+		}
+		ContingencyPlan plan = findPlan(game);
+        return plan.getAction();
 	}
 	
 	/**
@@ -0,0 +1,71 @@
+/**
+ * Cheap evaluator which only looks at the squares where a piece can be played (the lowest empty square of each column which is not full).
+ * Each neighbour of such a square (left, right, below and the four diagonals) adds 2 if it contains a red piece and 1 if it is empty.
+ * It is much cheaper than the full heuristic (at most 7 squares and 49 neighbours instead of 42 scans), so it is meant to order the moves.
+ */
+public class AdjacencyEvaluator implements Evaluator {
+	public double evaluate(GameState game) {
+		Geometry geometry = game.geometry();
+		int heuristic_value = 0;
+		
+		for (int column = 0; column < geometry.columns; column++) {
+			
+			//we look for the first empty row of the column
+			int row = 0;
+			while (row < geometry.rows && game.content(row, column) != 0)
+				row++;
+			
+			//if the column is not full
+			if (row < geometry.rows)
+				heuristic_value += AdjacencyEvaluator.compute_row(game, row, column) + AdjacencyEvaluator.compute_column(game, row, column) + AdjacencyEvaluator.compute_diag(game, row, column);
+		}
+		return game.proba() * ((double) heuristic_value);
+	}
+	
+	/**
+	 * Computes the value of the square at (row, column) for the squares on its left and on its right
+	 * @param game the game state we consider
+	 * @param row the row considered
+	 * @param column the column considered
+	 * @return the value of the neighbours on the row
+	 */
+	public static int compute_row(GameState game, int row, int column) {
+		return AdjacencyEvaluator.neighbour(game, row, column - 1) + AdjacencyEvaluator.neighbour(game, row, column + 1);
+	}
+	
+	/**
+	 * Computes the value of the square at (row, column) for the square below it (the square above a playable square is always empty)
+	 * @param game the game state we consider
+	 * @param row the row considered
+	 * @param column the column considered
+	 * @return the value of the neighbour on the column
+	 */
+	public static int compute_column(GameState game, int row, int column) {
+		return AdjacencyEvaluator.neighbour(game, row - 1, column);
+	}
+	
+	/**
+	 * Computes the value of the square at (row, column) for the squares on its diagonals
+	 * @param game the game state we consider
+	 * @param row the row considered
+	 * @param column the column considered
+	 * @return the value of the neighbours on the diagonals
+	 */
+	public static int compute_diag(GameState game, int row, int column) {
+		return AdjacencyEvaluator.neighbour(game, row - 1, column - 1) + AdjacencyEvaluator.neighbour(game, row - 1, column + 1)
+			 + AdjacencyEvaluator.neighbour(game, row + 1, column - 1) + AdjacencyEvaluator.neighbour(game, row + 1, column + 1);
+	}
+	
+	private static int neighbour(GameState game, int row, int column) {
+		if (row < 0 || column < 0 || row >= game.geometry().rows || column >= game.geometry().columns)
+			return 0;
+		int content = game.content(row, column);
+		if (content == 2)
+			return 2;
+		return content == 0? 1: 0;
+	}
+	
+	public String toString() {
+		return "adjacency";
+	}
+}
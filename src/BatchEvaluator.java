@@ -0,0 +1,133 @@
+/**
+ * Evaluator computing the heuristic of the AI (see AI.heuristic(GameState)) for many game states at once. The states are packed as two masks of squares (red and yellow pieces, see GameState.pieceMask)
+ * and the lines of 4 of each square are masks as well, so a line is blocked by the opponent if its mask intersects the mask of the opponent.
+ * The states are processed by blocks, square by square, the inner loop running over the states of the block, so that the tables of a square are read once per block.
+ * The inner loop branches on the content of the square and on the lines, so it is not vectorized: the gain comes from the packed states and the masks of the lines.
+ * The belief states are packed with PackedBeliefState.
+ * The values are exactly the ones of AI.heuristic (the value of a state is accumulated in an int in the same order), for boards of at most 64 squares.
+ */
+public class BatchEvaluator implements Evaluator {
+	//number of states evaluated together
+	final static int BATCH = 256;
+
+	/**
+	 * Tables of a geometry: weight of each square, number of lines of each square and masks of the other squares of these lines
+	 */
+	private static class Tables {
+		final Geometry geometry;
+		final double[] weights;
+		final int[] lines;
+		final long[][] windows;
+
+		Tables(Geometry geometry) {
+			if(geometry.rows * geometry.columns > 64) {
+				throw new IllegalArgumentException("Batch evaluation needs at most 64 squares: " + geometry);
+			}
+			this.geometry = geometry;
+			int squares = geometry.rows * geometry.columns;
+			this.weights = new double[squares];
+			this.lines = new int[squares];
+			this.windows = new long[squares][];
+			for(int row = 0; row < geometry.rows; row++) {
+				for(int column = 0; column < geometry.columns; column++) {
+					int square = row * geometry.columns + column;
+					//the standard game uses the tables of the AI, so that the values are exactly the same
+					if(geometry == Geometry.DEFAULT) {
+						this.weights[square] = AI.cweights[column] * AI.rweights[row];
+						this.lines[square] = AI.HEURISTIC[row][column];
+					}
+					else {
+						this.weights[square] = geometry.cweights[column] * geometry.rweights[row];
+						this.lines[square] = geometry.heuristic[row][column];
+					}
+					int[][] cellWindows = geometry.windows[row][column];
+					this.windows[square] = new long[cellWindows.length];
+					for(int i = 0; i < cellWindows.length; i++) {
+						for(int other: cellWindows[i]) {
+							this.windows[square][i] |= 1L << other;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private volatile Tables tables;
+
+	public double evaluate(GameState game) {
+		long[] red = new long[] {game.pieceMask(2)};
+		long[] yellow = new long[] {game.pieceMask(1)};
+		float[] proba = new float[] {game.proba()};
+		double[] values = new double[1];
+		this.evaluate(game.geometry(), red, yellow, proba, 1, values);
+		return values[0];
+	}
+
+	public double evaluate(BeliefState state) {
+		return new PackedBeliefState(state).heuristic(this);
+	}
+
+	/**
+	 * Computes the heuristic values of packed game states
+	 * @param geometry the geometry of the game
+	 * @param red the masks of the red pieces of the states
+	 * @param yellow the masks of the yellow pieces of the states
+	 * @param proba the probabilities of the states
+	 * @param count the number of states
+	 * @param values array in which the value of each state (weighted by its probability) is written
+	 * @return the sum of the values of the states
+	 */
+	public double evaluate(Geometry geometry, long[] red, long[] yellow, float[] proba, int count, double[] values) {
+		Tables tables = this.tables;
+		if(tables == null || !tables.geometry.equals(geometry)) {
+			tables = new Tables(geometry);
+			this.tables = tables;
+		}
+		int[] heuristic = new int[Math.min(count, BATCH)];
+		int squares = geometry.rows * geometry.columns;
+		double sum = 0.;
+		for(int first = 0; first < count; first += BATCH) {
+			int last = Math.min(count, first + BATCH);
+			sum += this.evaluate(tables, squares, red, yellow, proba, first, last, heuristic, values);
+		}
+		return sum;
+	}
+
+	//computes the values of the states first to last - 1, heuristic being used to accumulate the values
+	private double evaluate(Tables tables, int squares, long[] red, long[] yellow, float[] proba, int first, int last, int[] heuristic, double[] values) {
+		for(int i = first; i < last; i++) {
+			heuristic[i - first] = 0;
+		}
+		for(int square = 0; square < squares; square++) {
+			long bit = 1L << square;
+			double weight = tables.weights[square];
+			int lines = tables.lines[square];
+			long[] windows = tables.windows[square];
+			for(int i = first; i < last; i++) {
+				//a piece of the AI counts positively and a piece of the opponent negatively, each one for its lines which are not blocked by the other player
+				boolean isRed = (red[i] & bit) != 0;
+				boolean isYellow = (yellow[i] & bit) != 0;
+				if(isRed || isYellow) {
+					long opponent = isRed? yellow[i]: red[i];
+					int blocked = 0;
+					for(long window: windows) {
+						if((window & opponent) != 0)
+							blocked++;
+					}
+					double term = weight * (lines - blocked);
+					heuristic[i - first] += isRed? term: -term;
+				}
+			}
+		}
+		double sum = 0.;
+		for(int i = first; i < last; i++) {
+			values[i] = proba[i] * ((double) heuristic[i - first]);
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	public String toString() {
+		return "batch";
+	}
+}
@@ -0,0 +1,66 @@
+import java.util.Random;
+
+/**
+ * Benchmark of the batch evaluation of the belief states: for belief states of 100 to 10000 random states, the time of AI.heuristic(BeliefState) (one state after the other)
+ * is compared to the time of BatchEvaluator, after a warm-up of the JIT compiler. The two values are also checked to be equal.
+ * usage: java BatchEvaluatorBenchmark [number of repetitions]
+ */
+public class BatchEvaluatorBenchmark {
+	public static void main(String[] args) {
+		int repetitions = args.length > 0? Integer.parseInt(args[0]): 20;
+		int[] sizes = new int[] {100, 1000, 10000};
+		Random random = new Random(0);
+		BatchEvaluator batch = new BatchEvaluator();
+
+		for(int size: sizes) {
+			BeliefState beliefState = BatchEvaluatorBenchmark.randomBeliefState(size, random);
+
+			//warm-up
+			double exact = 0, batched = 0;
+			for(int i = 0; i < 5; i++) {
+				exact = AI.heuristic(beliefState);
+				batched = batch.evaluate(beliefState);
+			}
+
+			long start = System.nanoTime();
+			for(int i = 0; i < repetitions; i++) {
+				exact = AI.heuristic(beliefState);
+			}
+			long exactNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < repetitions; i++) {
+				batched = batch.evaluate(beliefState);
+			}
+			long batchNanos = System.nanoTime() - start;
+
+			double perState = 1. / ((double) repetitions * beliefState.size());
+			System.out.println("size = " + beliefState.size() + " scalar = " + String.format("%.1f", exactNanos * perState) + " ns/state"
+					+ " batch = " + String.format("%.1f", batchNanos * perState) + " ns/state"
+					+ " speedup = " + String.format("%.1f", (double) exactNanos / batchNanos)
+					+ (Math.abs(exact - batched) <= 1e-9 * Math.max(1., Math.abs(exact))? "": " MISMATCH " + exact + " " + batched));
+		}
+	}
+
+	/**
+	 * Build a belief state of random states (games played at random for a random number of moves)
+	 * @param size the number of states to draw
+	 * @param random the random generator
+	 * @return the belief state (it may be smaller than size if the same state is drawn twice)
+	 */
+	static BeliefState randomBeliefState(int size, Random random) {
+		BeliefState beliefState = new BeliefState();
+		for(int i = 0; i < size; i++) {
+			GameState game = new GameState();
+			int moves = 8 + random.nextInt(24);
+			for(int move = 0; move < moves && !game.isGameOver() && !game.isFull(); move++) {
+				int column = random.nextInt(game.geometry().columns);
+				if(!game.isFull(column)) {
+					game.putPiece(column);
+				}
+			}
+			game.setProba(1.f / size);
+			beliefState.add(game);
+		}
+		return beliefState;
+	}
+}
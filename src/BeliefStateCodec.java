@@ -0,0 +1,139 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of a belief state, used to keep idle belief states off the heap (see SessionStore) and to send them to other processes.
+ * The states of a belief state are sorted (it is a TreeSet), so consecutive boards usually have the same first bytes: each board is written as the number of bytes it shares with the previous board
+ * followed by its other bytes (front coding). A state takes 1 byte, its differing bytes and 4 bytes of probability, instead of a GameState object, its board and a node of the TreeSet.
+ *
+ * Format (big-endian):
+ *   byte VERSION, byte rows, byte columns, byte k, visibleBytes bytes of visible squares (one bit per square, as the isVisible field of BeliefState), varint played, varint number of states,
+ *   for each state in the order of the belief state: byte number of bytes shared with the previous board, the other bytes of the board (as GameState.pack, without bias), float probability
+ */
+public class BeliefStateCodec {
+	public final static byte VERSION = 1;
+
+	/**
+	 * Encode a belief state
+	 * @param beliefState the belief state
+	 * @return the encoding of the belief state
+	 */
+	public static byte[] encode(BeliefState beliefState) {
+		Geometry geometry = beliefState.geometry();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 + geometry.visibleBytes + beliefState.size() * 8);
+		out.write(VERSION);
+		out.write(geometry.rows);
+		out.write(geometry.columns);
+		out.write(geometry.k);
+		byte[] visible = new byte[geometry.visibleBytes];
+		for(int row = 0; row < geometry.rows; row++) {
+			for(int column = 0; column < geometry.columns; column++) {
+				int pos = row * geometry.columns + column;
+				if(beliefState.isVisible(row, column))
+					visible[pos / 8] |= 1 << (pos % 8);
+			}
+		}
+		out.write(visible, 0, visible.length);
+		BeliefStateCodec.writeVarint(out, beliefState.getPlayed());
+		BeliefStateCodec.writeVarint(out, beliefState.size());
+
+		int wordsPerState = (geometry.boardBytes + 7) / 8;
+		long[] words = new long[wordsPerState];
+		byte[] previous = new byte[geometry.boardBytes];
+		byte[] board = new byte[geometry.boardBytes];
+		for(GameState state: beliefState) {
+			state.pack(words, 0);
+			int shared = 0;
+			for(int i = 0; i < board.length; i++) {
+				board[i] = (byte) (words[i / 8] >>> (8 * (i % 8)));
+				if(shared == i && board[i] == previous[i])
+					shared++;
+			}
+			out.write(shared);
+			out.write(board, shared, board.length - shared);
+			int bits = Float.floatToIntBits(state.proba());
+			out.write(bits >>> 24);
+			out.write(bits >>> 16);
+			out.write(bits >>> 8);
+			out.write(bits);
+			byte[] swap = previous;
+			previous = board;
+			board = swap;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode a belief state
+	 * @param data the encoding of the belief state (see encode)
+	 * @return the belief state
+	 */
+	public static BeliefState decode(byte[] data) {
+		return BeliefStateCodec.decode(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Decode a belief state from the position of a buffer, the position being moved after the encoding
+	 * @param buffer the buffer
+	 * @return the belief state
+	 * @throws IllegalArgumentException if the buffer does not contain the encoding of a belief state
+	 */
+	public static BeliefState decode(ByteBuffer buffer) {
+		byte version = buffer.get();
+		if(version != VERSION)
+			throw new IllegalArgumentException("Unsupported encoding of belief state: " + version);
+		Geometry geometry = Geometry.of(buffer.get(), buffer.get(), buffer.get());
+		byte[] visible = new byte[geometry.visibleBytes];
+		buffer.get(visible);
+		byte[] isVisible = new byte[geometry.visibleBytes];
+		for(int i = 0; i < isVisible.length; i++) {
+			isVisible[i] = Byte.MIN_VALUE;
+		}
+		for(int row = 0; row < geometry.rows; row++) {
+			for(int column = 0; column < geometry.columns; column++) {
+				int pos = row * geometry.columns + column;
+				BeliefState.setVisible(row, column, ((visible[pos / 8] >> (pos % 8)) & 1) != 0, isVisible, geometry);
+			}
+		}
+		int played = BeliefStateCodec.readVarint(buffer);
+		int size = BeliefStateCodec.readVarint(buffer);
+		BeliefState beliefState = new BeliefState(geometry, isVisible, played);
+
+		int wordsPerState = (geometry.boardBytes + 7) / 8;
+		long[] words = new long[wordsPerState];
+		byte[] board = new byte[geometry.boardBytes];
+		for(int n = 0; n < size; n++) {
+			int shared = buffer.get() & 0xFF;
+			if(shared > board.length)
+				throw new IllegalArgumentException("Invalid encoding of belief state: " + shared + " shared bytes");
+			buffer.get(board, shared, board.length - shared);
+			for(int i = 0; i < wordsPerState; i++) {
+				words[i] = 0;
+			}
+			for(int i = 0; i < board.length; i++) {
+				words[i / 8] |= ((long) (board[i] & 0xFF)) << (8 * (i % 8));
+			}
+			beliefState.add(GameState.unpack(geometry, words, 0, buffer.getFloat()));
+		}
+		return beliefState;
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarint(ByteBuffer buffer) {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+		throw new IllegalArgumentException("Invalid encoding of belief state: varint too long");
+	}
+}
@@ -1,14 +1,22 @@
 import java.awt.*;
 import java.awt.geom.*;
-import java.util.ArrayList;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
 
 public class BoardDrawing extends JComponent{
 	private GameDisplay state;
 	private Rectangle board;
 	private Rectangle textBack;
+	private Rectangle errorBack;
 	private String stateMessage;
-	private ArrayList<Ellipse2D.Double> holes;
+	//error message drawn by the last paint of the area of the error, the area is repainted only when the message changes
+	private String paintedError;
+	//the blue board, its holes and the labels of the rows never change, they are drawn once in this image
+	private BufferedImage staticLayer;
+	private Font font;
+	private String[] labels;
+	//shape reused to draw every piece
+	private Ellipse2D.Double piece;
 	final int BOARD_START_X = 182;
 	final int BOARD_START_Y = 75;
 	final int BOARD_WIDTH = 386;
@@ -18,104 +26,153 @@ public class BoardDrawing extends JComponent{
 	final int HOLE_OFFSET = 25;
 	final int HOLE_START_X = BOARD_START_X + HOLE_OFFSET;
 	final int HOLE_START_Y = BOARD_START_Y + BOARD_HEIGHT - HOLE_OFFSET - HOLE_DIAMETER;
-	
-	
+
+
 	public BoardDrawing(GameDisplay gs) {
 		state = gs;
 		//initializes the board
 		board = new Rectangle(BOARD_START_X, BOARD_START_Y, BOARD_WIDTH, BOARD_HEIGHT);
 		//initializes the gamestate message text back
 		textBack = new Rectangle(BOARD_START_X + (BOARD_WIDTH / 2) - 100, BOARD_START_Y - 50, 200, 40);
-		//initializes the holes in the board
-		holes = new ArrayList<>();
-		for(int i = 0; i < 7; i++) {
-			for(int j = 0; j < 6; j++) {
-				Ellipse2D.Double hole = new Ellipse2D.Double(HOLE_START_X + i * HOLE_DISTANCE, HOLE_START_Y - j * HOLE_DISTANCE, HOLE_DIAMETER, HOLE_DIAMETER);
-				holes.add(hole);
-			}
+		//initializes the area of the error message
+		errorBack = new Rectangle(0, 195, BOARD_START_X, 65);
+		font = new Font("TimesRoman", Font.BOLD, 20);
+		labels = new String[state.getColumns()];
+		for(int i = 0; i < labels.length; i++) {
+			labels[i] = Integer.toString(i + 1);
 		}
+		piece = new Ellipse2D.Double(0, 0, HOLE_DIAMETER - 4, HOLE_DIAMETER - 4);
 	}
-	
-	public void paintComponent(Graphics g){
-		Graphics2D g2 = (Graphics2D) g;
-		g2.setFont(new Font("TimesRoman", Font.BOLD, 20));
-		
+
+	//repaints only the column of the last move, the message of the state and the error message if it has changed
+	public void repaintLastMove() {
+		if(state.getMoves().empty()) {
+			repaint();
+			return;
+		}
+		int column = (int) state.getMoves().peek().getX();
+		//at the end of the game the hidden pieces of every column are revealed
+		if(state.getGameOver()) repaintRegion(board);
+		else repaintRegion(new Rectangle(HOLE_START_X + column * HOLE_DISTANCE, BOARD_START_Y, HOLE_DIAMETER, BOARD_HEIGHT));
+		repaintRegion(textBack);
+		String error = state.getError();
+		if(error == null? paintedError != null: !error.equals(paintedError)) repaintRegion(errorBack);
+	}
+
+	//paints a region on its own: the RepaintManager merges the regions passed to repaint into their bounding rectangle, which would cover most of the board
+	private void repaintRegion(Rectangle region) {
+		Rectangle r = new Rectangle(region);
+		if(SwingUtilities.isEventDispatchThread()) paintImmediately(r);
+		else SwingUtilities.invokeLater(() -> paintImmediately(r));
+	}
+
+	//draws the board, its holes and the row labeling in the cached image
+	private void drawStaticLayer() {
+		staticLayer = new BufferedImage(BOARD_START_X + BOARD_WIDTH, BOARD_START_Y + BOARD_HEIGHT + 30, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = staticLayer.createGraphics();
+		g2.setFont(font);
+
 		//draws the board
 		g2.setColor(Color.blue);
 		g2.fill(board);
-		
+
 		//draws the holes
 		g2.setColor(Color.white);
-		for(Ellipse2D.Double hole : holes) g2.fill(hole);
-		
+		Ellipse2D.Double hole = new Ellipse2D.Double(0, 0, HOLE_DIAMETER, HOLE_DIAMETER);
+		for(int i = 0; i < state.getColumns(); i++) {
+			for(int j = 0; j < state.getRows(); j++) {
+				hole.setFrame(HOLE_START_X + i * HOLE_DISTANCE, HOLE_START_Y - j * HOLE_DISTANCE, HOLE_DIAMETER, HOLE_DIAMETER);
+				g2.fill(hole);
+			}
+		}
+
 		//draws the row labeling
 		g2.setColor(Color.black);
-		for(int i = 0; i < 7; i ++) {
-			int w = (int) g2.getFontMetrics().stringWidth(Integer.toString(i+1));
-			g2.drawString(Integer.toString(i+1), HOLE_START_X + HOLE_DIAMETER / 2 - w / 2 + i * HOLE_DISTANCE, BOARD_START_Y + BOARD_HEIGHT + 25);
+		for(int i = 0; i < labels.length; i ++) {
+			int w = (int) g2.getFontMetrics().stringWidth(labels[i]);
+			g2.drawString(labels[i], HOLE_START_X + HOLE_DIAMETER / 2 - w / 2 + i * HOLE_DISTANCE, BOARD_START_Y + BOARD_HEIGHT + 25);
 		}
-		
+		g2.dispose();
+	}
+
+	public void paintComponent(Graphics g){
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setFont(font);
+		Rectangle clip = g2.getClipBounds();
+
+		if(staticLayer == null) drawStaticLayer();
+		g2.drawImage(staticLayer, 0, 0, null);
+
 		//draws the proper game state message
-		if(state.getRedWins()) {
-			g2.setColor(Color.red);
-			g2.fill(textBack);
-			g.setColor(Color.black);
-			stateMessage = "RED WINS!";
-		}
-		else if(state.getYellowWins()) {
-			g2.setColor(Color.yellow);
-			g2.fill(textBack);
-			g.setColor(Color.black);
-			stateMessage = "YELLOW WINS!";
-		}
-		else if(state.getGameOver()) {
-			g2.setColor(Color.black);
-			g2.fill(textBack);
-			g.setColor(Color.white);
-			stateMessage = "IT'S A TIE!";
-		}
-		else if(state.getRedsTurn()) {
-			g2.setColor(Color.lightGray);
-			g2.fill(textBack);
-			g.setColor(Color.red);
-			stateMessage = "Red's Turn";
-		}
-		else{
-			g2.setColor(Color.lightGray);
-			g2.fill(textBack);
-			g.setColor(Color.yellow);
-			stateMessage = "Yellow's Turn";
+		if(clip == null || clip.intersects(textBack)) {
+			if(state.getRedWins()) {
+				g2.setColor(Color.red);
+				g2.fill(textBack);
+				g.setColor(Color.black);
+				stateMessage = "RED WINS!";
+			}
+			else if(state.getYellowWins()) {
+				g2.setColor(Color.yellow);
+				g2.fill(textBack);
+				g.setColor(Color.black);
+				stateMessage = "YELLOW WINS!";
+			}
+			else if(state.getGameOver()) {
+				g2.setColor(Color.black);
+				g2.fill(textBack);
+				g.setColor(Color.white);
+				stateMessage = "IT'S A TIE!";
+			}
+			else if(state.getRedsTurn()) {
+				g2.setColor(Color.lightGray);
+				g2.fill(textBack);
+				g.setColor(Color.red);
+				stateMessage = "Red's Turn";
+			}
+			else{
+				g2.setColor(Color.lightGray);
+				g2.fill(textBack);
+				g.setColor(Color.yellow);
+				stateMessage = "Yellow's Turn";
+			}
+			int stringWidth = (int) g2.getFontMetrics().stringWidth(stateMessage);
+			int strX = BOARD_START_X + (BOARD_WIDTH  - stringWidth) / 2;
+			g2.drawString(stateMessage, strX, BOARD_START_Y - 22);
 		}
-		int stringWidth = (int) g2.getFontMetrics().stringWidth(stateMessage);
-		int strX = BOARD_START_X + (BOARD_WIDTH  - stringWidth) / 2;
-		g2.drawString(stateMessage, strX, BOARD_START_Y - 22);
-		
+
 		//draws the error message (if there is any)
+		if(clip == null || clip.intersects(errorBack)) paintedError = state.getError();
 		if(state.getError() != null) {
 			g2.setColor(Color.black);
 			g2.drawString("Oops!", 15, 220);
 			g2.drawString(state.getError(), 15, 250);
 		}
-		
-		//draws the pieces
-		for(int i = 0; i < state.getPieces().length; i++) {
-			boolean isVisible = state.getGameOver() || state.getPieces()[i][state.getPieces()[0].length - 1] != null;
-			for(int j = state.getPieces()[0].length - 1; j > -1 ; j--) {
-				if(state.getPieces()[i][j] == null);
-				else if (state.getPieces()[i][j] == true) {
+
+		//draws the pieces of the columns to repaint (the yellow pieces are drawn only if they are visible: above a red piece, in a full column or at the end of the game)
+		int rows = state.getRows();
+		for(int i = 0; i < state.getColumns(); i++) {
+			int x = HOLE_START_X + i * HOLE_DISTANCE;
+			if(clip != null && (x + HOLE_DIAMETER < clip.x || x > clip.x + clip.width)) continue;
+			boolean isVisible = state.getGameOver() || state.getPiece(i, rows - 1) != 0;
+			for(int j = rows - 1; j > -1 ; j--) {
+				int content = state.getPiece(i, j);
+				if(content == 0);
+				else if (content == 2) {
 					isVisible = true;
 					g2.setColor(Color.red);
-					g2.fill(new Ellipse2D.Double(HOLE_START_X + 2 + i * HOLE_DISTANCE, HOLE_START_Y + 2 - j * HOLE_DISTANCE, HOLE_DIAMETER - 4, HOLE_DIAMETER - 4));
+					piece.setFrame(x + 2, HOLE_START_Y + 2 - j * HOLE_DISTANCE, HOLE_DIAMETER - 4, HOLE_DIAMETER - 4);
+					g2.fill(piece);
 				}
 				else {
 					if(isVisible) {
 						g2.setColor(Color.yellow);
-						g2.fill(new Ellipse2D.Double(HOLE_START_X + 2 + i * HOLE_DISTANCE, HOLE_START_Y + 2 - j * HOLE_DISTANCE, HOLE_DIAMETER - 4, HOLE_DIAMETER - 4));
+						piece.setFrame(x + 2, HOLE_START_Y + 2 - j * HOLE_DISTANCE, HOLE_DIAMETER - 4, HOLE_DIAMETER - 4);
+						g2.fill(piece);
 					}
 				}
 			}
 		}
 	}
 }
-	
-	
+
+
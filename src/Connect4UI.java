@@ -18,6 +18,20 @@ public class Connect4UI {
 	      frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
 	      final GameDisplay state = new GameDisplay();
+	      //the games are recorded if the system property connect4.record gives a file
+	      final GameRecorder recorder = GameRecorder.fromProperty(state.getState().geometry());
+	      if(recorder != null) {
+	    	  state.setRecorder(recorder);
+	    	  Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    		  try {
+	    			  state.setRecorder(null);
+	    			  recorder.close();
+	    		  }
+	    		  catch(java.io.IOException e) {
+	    			  System.err.println("Cannot write the game records: " + e.getMessage());
+	    		  }
+	    	  }));
+	      }
 	      final BeliefState beliefState = new BeliefState();
 	      beliefState.add(state.getState().copy());
 	      final BoardDrawing board = new BoardDrawing(state);
@@ -30,18 +44,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(1);
-		            	Results beliefStates = beliefState.putPiecePlayer(0);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(1, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(0, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -54,18 +66,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(2);
-		            	Results beliefStates = beliefState.putPiecePlayer(1);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(2, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(1, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -78,18 +88,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(3);
-		            	Results beliefStates = beliefState.putPiecePlayer(2);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(3, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(2, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -102,18 +110,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(4);
-		            	Results beliefStates = beliefState.putPiecePlayer(3);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(4, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(3, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -126,18 +132,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(5);
-		            	Results beliefStates = beliefState.putPiecePlayer(4);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(5, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(4, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -150,18 +154,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(6);
-		            	Results beliefStates = beliefState.putPiecePlayer(5);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(6, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(5, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -174,18 +176,16 @@ public class Connect4UI {
 	            public void actionPerformed(ActionEvent event)
 	            {
 	            	if(!isAI) {
-		            	state.move(7);
-		            	Results beliefStates = beliefState.putPiecePlayer(6);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(7, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(6, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		int aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -199,18 +199,16 @@ public class Connect4UI {
 	            {
 	            	if(!state.getGameOver()) {
 	            		int aiPlay = 1 + AI.findNextMove(beliefState);
-		            	state.move(aiPlay);
-		            	Results beliefStates = beliefState.putPiecePlayer(aiPlay - 1);
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+		            	state.move(aiPlay, beliefState);
+		            	beliefState.setStates(beliefState.observePlayer(aiPlay - 1, state.getState()));
 		            	//System.out.println(beliefState);
-		            	board.repaint();
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver()) {
 		            		aiPlay = 1 + iap.decision(state.getState());
-			            	state.move(aiPlay);
-			            	beliefStates = beliefState.predict();
-			            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+			            	state.move(aiPlay, beliefState);
+			            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
 			            	//System.out.println(beliefState.toString());
-			            	board.repaint();
+			            	board.repaintLastMove();
 		            	}
 	            	}
 	            }
@@ -232,6 +230,38 @@ public class Connect4UI {
 	            }
 	         });
 	      
+	      //undoes the last move of the player (and the answer of the opponent)
+	      JButton buttonUndo = new JButton("Undo");
+	      buttonUndo.addActionListener(new
+	         ActionListener()
+	         {
+	            public void actionPerformed(ActionEvent event)
+	            {
+	            	if(!isAI) {
+	            		state.undo(beliefState);
+	            		if(!state.getRedsTurn() && state.canUndo())
+	            			state.undo(beliefState);
+	            		board.repaint();
+	            	}
+	            }
+	         });
+	      
+	      //plays again the last move undone by the player (and the answer of the opponent)
+	      JButton buttonRedo = new JButton("Redo");
+	      buttonRedo.addActionListener(new
+	         ActionListener()
+	         {
+	            public void actionPerformed(ActionEvent event)
+	            {
+	            	if(!isAI) {
+	            		state.redo(beliefState);
+	            		if(!state.getRedsTurn() && state.canRedo())
+	            			state.redo(beliefState);
+	            		board.repaint();
+	            	}
+	            }
+	         });
+	      
 	      JMenuBar jmb = new JMenuBar();
 	      JMenu menu = new JMenu("Control");
 	      JMenuItem manual  = new JMenuItem("Manual")/*, ai = new JMenuItem("AI")*/;
@@ -252,6 +282,8 @@ public class Connect4UI {
 	      buttons.add(button6);
 	      buttons.add(button7);
 	      //buttons.add(buttonAI);
+	      buttons.add(buttonUndo);
+	      buttons.add(buttonRedo);
 	      buttons.add(buttonRestart);
 
 	      frame.add(board, BorderLayout.CENTER);
@@ -280,19 +312,17 @@ public class Connect4UI {
             		elapsedTime = System.currentTimeMillis() - elapsedTime;
 	            	nbrSamples++;
 	            	meanTimeResolution = ((double)elapsedTime) / nbrSamples + (((double)(nbrSamples - 1)) / nbrSamples) * meanTimeResolution;
-            		state.move(aiPlay);
-	            	Results beliefStates = beliefState.putPiecePlayer(aiPlay - 1);
-	            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
+            		state.move(aiPlay, beliefState);
+	            	beliefState.setStates(beliefState.observePlayer(aiPlay - 1, state.getState()));
 	            	//System.out.println(beliefState);
-	            	board.repaint();
+	            	board.repaintLastMove();
 	            	if(!state.getGameOver() && state.getRedsTurn() == state.getState().turn())
 	            		System.out.println("problem turn");
 	            	if(!state.getGameOver()) {
 	            		aiPlay = 1 + iap.decision(state.getState());
-		            	state.move(aiPlay);
-		            	beliefStates = beliefState.predict();
-		            	beliefState.setStates(BeliefState.filter(beliefStates, state.getState()));
-		            	board.repaint();
+		            	state.move(aiPlay, beliefState);
+		            	beliefState.setStates(beliefState.observeOpponent(state.getState()));
+		            	board.repaintLastMove();
 		            	if(!state.getGameOver() && state.getRedsTurn() == state.getState().turn())
 		            		System.out.println("problem turn");
 	            	}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perfect Information Monte Carlo search. A number of concrete game states are drawn from the belief state, each of them is solved by an ExpectimaxSolver as if the board were fully visible
+ * (the opponent being modelled by the policy of ProbabilisticOpponentAI) and the values of the columns are aggregated over the draws.
+ * The cost of a decision is controlled by the number of draws instead of the size of the belief state, and the draws are evaluated in parallel on a pool of threads.
+ */
+public class DeterminizedSearch {
+	private int samples;
+	private int depth;
+	private ExecutorService executor;
+	private Random random;
+	//each thread of the pool solves its game states with its own solver (and transposition table)
+	private ThreadLocal<ExpectimaxSolver> solvers;
+
+	/**
+	 * Construct a search which evaluates the draws on as many threads as there are processors
+	 * @param samples number of game states drawn from the belief state
+	 * @param depth number of moves of the AI considered in each game state
+	 */
+	public DeterminizedSearch(int samples, int depth) {
+		this(samples, depth, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Construct a search
+	 * @param samples number of game states drawn from the belief state
+	 * @param depth number of moves of the AI considered in each game state
+	 * @param threads number of threads used to evaluate the game states
+	 */
+	public DeterminizedSearch(int samples, int depth, int threads) {
+		this.samples = samples;
+		this.depth = depth;
+		this.random = new Random();
+		this.solvers = ThreadLocal.withInitial(() -> new ExpectimaxSolver(this.depth));
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "determinized-search");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the best action to take in the current situation i.e., the column with the best value over the draws
+	 * @param beliefState the current belief state (it is the turn of the AI)
+	 * @return an integer which represents the column to play
+	 */
+	public int findNextMove(BeliefState beliefState) {
+		MoveList moves = this.evaluate(beliefState);
+		moves.sortByScore();
+		return moves.get(0);
+	}
+
+	/**
+	 * Compute the value of each move of the AI. If the belief state has no more states than the number of draws, all its states are evaluated with the weight of their probability,
+	 * otherwise the states are drawn with their probability and all the draws have the same weight.
+	 * @param beliefState the current belief state (it is the turn of the AI)
+	 * @return the moves of the AI, the score of each move being its mean value over the game states
+	 */
+	public MoveList evaluate(BeliefState beliefState) {
+		ArrayList<GameState> states = new ArrayList<GameState>();
+		ArrayList<Double> weights = new ArrayList<Double>();
+		if(beliefState.size() <= this.samples) {
+			for(GameState state: beliefState) {
+				states.add(state);
+				weights.add((double) state.proba());
+			}
+		}
+		else {
+			GameState[] members = new GameState[beliefState.size()];
+			double[] cumul = new double[beliefState.size()];
+			double sum = 0;
+			int n = 0;
+			for(GameState state: beliefState) {
+				sum += state.proba();
+				members[n] = state;
+				cumul[n++] = sum;
+			}
+			for(int i = 0; i < this.samples; i++) {
+				double r = this.random.nextDouble() * sum;
+				int index = 0;
+				while(index < n - 1 && cumul[index] <= r) {
+					index++;
+				}
+				states.add(members[index]);
+				weights.add(1.);
+			}
+		}
+
+		MoveList moves = beliefState.getMoves();
+		ArrayList<Future<double[]>> values = new ArrayList<Future<double[]>>();
+		for(GameState state: states) {
+			values.add(this.executor.submit(() -> this.values(state, moves)));
+		}
+		double[] total = new double[MoveList.CAPACITY];
+		double weightSum = 0;
+		try {
+			for(int i = 0; i < states.size(); i++) {
+				double[] value = values.get(i).get();
+				for(int j = 0; j < moves.size(); j++) {
+					total[j] += weights.get(i) * value[j];
+				}
+				weightSum += weights.get(i);
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Determinized search interrupted", e);
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("Determinized search failed", e.getCause());
+		}
+		for(int j = 0; j < moves.size(); j++) {
+			moves.setScore(j, total[j] / weightSum);
+		}
+		return moves;
+	}
+
+	/**
+	 * Stop the threads of the search
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Compute the value of each move in a fully visible game state
+	 * @param state the game state (it is not modified)
+	 * @param moves the moves to evaluate
+	 * @return the value of each move, in the order of the list
+	 */
+	private double[] values(GameState state, MoveList moves) {
+		MoveList solved = this.solvers.get().evaluate(state);
+		double[] values = new double[moves.size()];
+		for(int i = 0; i < moves.size(); i++) {
+			for(int j = 0; j < solved.size(); j++) {
+				if(solved.get(j) == moves.get(i)) {
+					values[i] = solved.score(j);
+				}
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,394 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinator of a search distributed over worker processes (see SearchWorker). The coordinator expands the root of the search as AI.orSearch and AI.andSearch do:
+ * for each move of the AI it computes the results with putPiecePlayer, then the answers of the opponent with predict, and each belief state obtained in this way is a job sent to a worker,
+ * which searches it as deep as AI.findPlan does. The values of the plans are then merged as in andSearch: the value of a move is the sum of the values of its belief states,
+ * and a move is discarded if one of its belief states has no plan. As in orSearch, a move without belief state to search (all its results are over or have no prediction)
+ * is valued by the leaf evaluator of its results. The search is thus one move deeper than the search of a single process, for the same time if there are enough workers.
+ *
+ * The jobs are taken from a shared queue by one thread per connection, so the fast workers take more jobs. A job which is not answered within the timeout is put back in the queue
+ * (the connection is closed and opened again for the next job), and after MAX_ATTEMPTS attempts it is searched by the coordinator, as well as all the jobs if no worker can be reached.
+ * With -check, the values of the moves of a few positions (with a move winning in all or in some of the states) are compared with the ones of AI.andSearch one move deeper.
+ * usage: java DistributedSearch [-games n] [-connections per worker] [-timeout ms] [-check] host:port...
+ */
+public class DistributedSearch {
+	private final static int MAX_ATTEMPTS = 3;
+	//time between two checks of the queues by the threads waiting for jobs (milliseconds)
+	private final static long POLL = 20;
+
+	/**
+	 * Belief state to search: a belief state of the AI after a move of the AI and an answer of the opponent
+	 */
+	private static class Job {
+		final int id;
+		//index of the move of the AI in the list of moves of the root
+		final int move;
+		final BeliefState beliefState;
+		byte[] data;
+		int attempts;
+		boolean hasPlan;
+		double value;
+
+		Job(int id, int move, BeliefState beliefState) {
+			this.id = id;
+			this.move = move;
+			this.beliefState = beliefState;
+		}
+
+		synchronized byte[] data() {
+			if(this.data == null)
+				this.data = BeliefStateCodec.encode(this.beliefState);
+			return this.data;
+		}
+	}
+
+	/**
+	 * Connection to a worker, used by a single thread at a time
+	 */
+	private class Connection {
+		final String host;
+		final int port;
+		Socket socket;
+		DataInputStream in;
+		DataOutputStream out;
+
+		Connection(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		/**
+		 * Open the connection if it is closed
+		 * @return false if the worker cannot be reached
+		 */
+		boolean connect() {
+			if(this.socket != null)
+				return true;
+			try {
+				this.socket = new Socket();
+				this.socket.connect(new InetSocketAddress(this.host, this.port), DistributedSearch.this.timeout);
+				this.socket.setTcpNoDelay(true);
+				this.socket.setSoTimeout(DistributedSearch.this.timeout);
+				this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+				this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+				return true;
+			}
+			catch(IOException e) {
+				this.close();
+				return false;
+			}
+		}
+
+		void close() {
+			try {
+				if(this.socket != null)
+					this.socket.close();
+			}
+			catch(IOException e) {
+				//the connection is dropped anyway
+			}
+			this.socket = null;
+		}
+
+		/**
+		 * Send a job to the worker and wait for its answer
+		 * @param job the job
+		 * @throws IOException if the worker does not answer within the timeout or if the connection is lost
+		 */
+		void search(Job job) throws IOException {
+			byte[] data = job.data();
+			this.out.writeInt(job.id);
+			this.out.writeInt(data.length);
+			this.out.write(data);
+			this.out.flush();
+			int id = this.in.readInt();
+			boolean hasPlan = this.in.readBoolean();
+			double value = this.in.readDouble();
+			this.in.readLong();
+			if(id != job.id)
+				throw new IOException("Answer to job " + id + " instead of " + job.id);
+			job.hasPlan = hasPlan;
+			job.value = value;
+		}
+
+		/**
+		 * Take the jobs of the queue and send them to the worker until all the jobs are done
+		 * @param queue the jobs to send to the workers
+		 * @param local the jobs to search in the coordinator
+		 * @param remaining the number of jobs which are not done
+		 */
+		void serve(LinkedBlockingDeque<Job> queue, LinkedBlockingDeque<Job> local, CountDownLatch remaining) throws InterruptedException {
+			while(remaining.getCount() > 0) {
+				Job job = queue.poll(POLL, TimeUnit.MILLISECONDS);
+				if(job == null)
+					continue;
+				if(!this.connect()) {
+					queue.addFirst(job);
+					return;
+				}
+				try {
+					this.search(job);
+					remaining.countDown();
+				}
+				catch(IOException e) {
+					//the worker is slow or lost: the job is dispatched again, and the answer of the worker, if any, is discarded with the connection
+					this.close();
+					job.attempts++;
+					if(job.attempts >= MAX_ATTEMPTS)
+						local.add(job);
+					else
+						queue.addFirst(job);
+				}
+			}
+		}
+	}
+
+	private final ArrayList<Connection> connections;
+	private final int timeout;
+	private final ExecutorService executor;
+
+	/**
+	 * Construct a coordinator
+	 * @param workers the addresses of the workers (host:port)
+	 * @param connectionsPerWorker the number of jobs sent at the same time to each worker (the number of its cores)
+	 * @param timeout time after which a job is dispatched again if the worker has not answered (milliseconds)
+	 */
+	public DistributedSearch(String[] workers, int connectionsPerWorker, int timeout) {
+		this.connections = new ArrayList<Connection>();
+		this.timeout = timeout;
+		for(String worker: workers) {
+			int colon = worker.lastIndexOf(':');
+			String host = colon < 0? worker: worker.substring(0, colon);
+			int port = colon < 0? SearchWorker.DEFAULT_PORT: Integer.parseInt(worker.substring(colon + 1));
+			for(int i = 0; i < connectionsPerWorker; i++) {
+				this.connections.add(new Connection(host, port));
+			}
+		}
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "distributed-search-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the best action to take in the current situation
+	 * @param beliefState the current belief state (it is the turn of the AI)
+	 * @return an integer which represents the column to play
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public int findNextMove(BeliefState beliefState) throws InterruptedException {
+		//a fully visible position is solved locally, as AI.findNextMove does
+		if(beliefState.size() == 1)
+			return AI.findNextMove(beliefState);
+		MoveList moves = this.evaluate(beliefState);
+		if(moves.isEmpty())
+			return beliefState.getMoves().get(0);
+		moves.sortByScore();
+		return moves.get(0);
+	}
+
+	/**
+	 * Compute the value of each move of the AI
+	 * @param beliefState the current belief state (it is the turn of the AI)
+	 * @return the moves which have a plan, the score of each move being the value of its plan
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public MoveList evaluate(BeliefState beliefState) throws InterruptedException {
+		MoveList moves = beliefState.getMoves();
+		ArrayList<Job> jobs = new ArrayList<Job>();
+		Results[] children = new Results[moves.size()];
+		for(int i = 0; i < moves.size(); i++) {
+			children[i] = beliefState.putPiecePlayer(moves.get(i));
+			for(BeliefState result: children[i]) {
+				if(result.isGameOver() || result.isFull())
+					continue;
+				Results predictions = result.predict();
+				if(predictions == null)
+					continue;
+				for(BeliefState prediction: predictions) {
+					jobs.add(new Job(jobs.size(), i, prediction));
+				}
+			}
+		}
+		this.run(jobs);
+
+		double[] values = new double[moves.size()];
+		boolean[] hasPlan = new boolean[moves.size()];
+		boolean[] hasJob = new boolean[moves.size()];
+		for(int i = 0; i < moves.size(); i++) {
+			hasPlan[i] = true;
+		}
+		for(Job job: jobs) {
+			values[job.move] += job.value;
+			hasPlan[job.move] &= job.hasPlan;
+			hasJob[job.move] = true;
+		}
+		//a move whose results are all over is valued as in orSearch, so that a certain win is not worth 0
+		SearchContext context = AI.CONTEXT.get();
+		for(int i = 0; i < moves.size(); i++) {
+			if(!hasJob[i])
+				values[i] = AI.heuristic(children[i], context.leafEvaluator, context);
+		}
+		MoveList evaluated = new MoveList();
+		for(int i = 0; i < moves.size(); i++) {
+			if(hasPlan[i])
+				evaluated.add(moves.get(i), values[i]);
+		}
+		return evaluated;
+	}
+
+	/**
+	 * Search the jobs on the workers, the calling thread searching the jobs which the workers failed to search
+	 * @param jobs the jobs
+	 */
+	private void run(ArrayList<Job> jobs) throws InterruptedException {
+		LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<Job>(jobs);
+		LinkedBlockingDeque<Job> local = new LinkedBlockingDeque<Job>();
+		CountDownLatch remaining = new CountDownLatch(jobs.size());
+		AtomicInteger active = new AtomicInteger(this.connections.size());
+		for(Connection connection: this.connections) {
+			this.executor.execute(() -> {
+				try {
+					connection.serve(queue, local, remaining);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				finally {
+					active.decrementAndGet();
+				}
+			});
+		}
+		while(!remaining.await(POLL, TimeUnit.MILLISECONDS)) {
+			Job job = local.poll();
+			//if no worker can be reached, the coordinator searches all the jobs
+			if(job == null && active.get() == 0)
+				job = queue.poll();
+			if(job != null) {
+				double[] value = new double[1];
+				job.hasPlan = SearchWorker.search(job.beliefState, value);
+				job.value = value[0];
+				remaining.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Close the connections to the workers
+	 */
+	public void close() {
+		for(Connection connection: this.connections) {
+			connection.close();
+		}
+		this.executor.shutdown();
+	}
+
+	//positions of the check (columns played from the start of the game, the AI playing first), where the AI can win at once in all the states and in some of the states
+	private final static String[] CHECK_POSITIONS = new String[] {"620342611534152142", "52420036"};
+
+	/**
+	 * Compare the values of the moves computed by a coordinator with the values computed by AI.andSearch for the belief states of the moves, the belief states of the opponent
+	 * being searched from the same depth as in AI.findPlan (so one move deeper than findPlan for the position)
+	 * @param search the coordinator
+	 * @return true if all the values are the same
+	 */
+	private static boolean check(DistributedSearch search) throws InterruptedException {
+		boolean same = true;
+		for(String position: CHECK_POSITIONS) {
+			GameState game = new GameState();
+			BeliefState beliefState = new BeliefState();
+			beliefState.add(game.copy());
+			for(int i = 0; i < position.length(); i++) {
+				int column = position.charAt(i) - '0';
+				game.putPiece(column);
+				beliefState = i % 2 == 0? beliefState.observePlayer(column, game): beliefState.observeOpponent(game);
+			}
+			MoveList evaluated = search.evaluate(beliefState);
+			MoveList moves = beliefState.getMoves();
+			SearchContext context = AI.CONTEXT.get();
+			for(int i = 0; i < moves.size(); i++) {
+				Results results = beliefState.putPiecePlayer(moves.get(i));
+				context.newSearch();
+				context.leafEvaluator.prepare(beliefState);
+				int plan = context.arena.newNode(moves.get(i), false, 0.);
+				boolean hasPlan = AI.andSearch(results, 0, plan, context);
+				double expected = !hasPlan? Double.NaN: context.arena.hasChildren(plan)? context.arena.subplanValue(plan): AI.heuristic(results, context.leafEvaluator, context);
+				double value = Double.NaN;
+				for(int j = 0; j < evaluated.size(); j++) {
+					if(evaluated.get(j) == moves.get(i))
+						value = evaluated.score(j);
+				}
+				boolean ok = Double.isNaN(expected)? Double.isNaN(value): Math.abs(value - expected) <= 1e-9 * Math.max(1., Math.abs(expected));
+				System.out.println(position + " column " + moves.get(i) + ": " + value + (ok? "": " instead of " + expected));
+				same &= ok;
+			}
+		}
+		return same;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int games = 10, connectionsPerWorker = Runtime.getRuntime().availableProcessors(), timeout = 10000;
+		boolean check = false;
+		ArrayList<String> workers = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "-games": games = Integer.parseInt(args[++i]); break;
+			case "-connections": connectionsPerWorker = Integer.parseInt(args[++i]); break;
+			case "-timeout": timeout = Integer.parseInt(args[++i]); break;
+			case "-check": check = true; break;
+			default: workers.add(args[i]);
+			}
+		}
+		DistributedSearch search = new DistributedSearch(workers.toArray(new String[0]), connectionsPerWorker, timeout);
+		if(check) {
+			System.out.println(DistributedSearch.check(search)? "check passed": "check FAILED");
+			search.close();
+			return;
+		}
+		ProbabilisticOpponentAI opponent = new ProbabilisticOpponentAI();
+		int win = 0, ties = 0, decisions = 0;
+		long decisionNanos = 0;
+		for(int i = 0; i < games; i++) {
+			GameState game = new GameState();
+			BeliefState beliefState = new BeliefState();
+			beliefState.add(game.copy());
+			while(!game.isGameOver() && !game.isFull()) {
+				long start = System.nanoTime();
+				int aiPlay = search.findNextMove(beliefState);
+				decisionNanos += System.nanoTime() - start;
+				decisions++;
+				game.putPiece(aiPlay);
+				beliefState.setStates(beliefState.observePlayer(aiPlay, game));
+				if(game.isGameOver() || game.isFull())
+					break;
+				game.putPiece(opponent.decision(game));
+				beliefState.setStates(beliefState.observeOpponent(game));
+			}
+			if(game.isGameOver() && !game.turn()) {
+				win++;
+			}
+			else if(!game.isGameOver()) {
+				ties++;
+			}
+		}
+		search.close();
+		System.out.println("Win: " + win + " Ties: " + ties + " Loose: " + (games - win - ties)
+				+ " mean time = " + String.format("%.2f", decisionNanos / 1e6 / Math.max(1, decisions)) + " ms");
+	}
+}
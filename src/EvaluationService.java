@@ -0,0 +1,187 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Evaluator shared by concurrent searches, which gathers the belief states requested by all the searches and evaluates them in batches with a BatchEvaluator.
+ * The states of a belief state are packed by the thread of the search when it is requested (see evaluateAsync), and a single thread of the service evaluates
+ * the states of all the pending requests in one pass, as soon as there are maxBatch states or when the oldest request has waited maxWait microseconds.
+ * The searches request all the values of a node before reading the first one (see AI.request), so they keep expanding the node while the batch fills up.
+ * The values are the same as the ones of HeuristicEvaluator (for boards of at most 64 squares, the larger ones being evaluated by the thread of the search).
+ */
+public class EvaluationService implements Evaluator, Closeable {
+	/**
+	 * Belief state waiting for its evaluation: the masks and probabilities of its states, and the value to complete
+	 */
+	private static class Request {
+		final Geometry geometry;
+		final long[] red;
+		final long[] yellow;
+		final float[] proba;
+		final long time;
+		final CompletableFuture<Double> value;
+
+		Request(BeliefState state) {
+			this.geometry = state.geometry();
+			int size = state.size();
+			this.red = new long[size];
+			this.yellow = new long[size];
+			this.proba = new float[size];
+			int i = 0;
+			for(GameState game: state) {
+				this.red[i] = game.pieceMask(2);
+				this.yellow[i] = game.pieceMask(1);
+				this.proba[i] = game.proba();
+				i++;
+			}
+			this.time = System.nanoTime();
+			this.value = new CompletableFuture<Double>();
+		}
+	}
+
+	private final int maxBatch;
+	private final long maxWaitNanos;
+	private final BatchEvaluator evaluator;
+	private final ConcurrentLinkedQueue<Request> queue;
+	private final Thread thread;
+	private volatile boolean closed;
+	//number of batches and of belief states evaluated, only written by the thread of the service
+	private volatile long batches;
+	private volatile long requests;
+
+	/**
+	 * Construct a service and start its thread
+	 * @param maxBatch number of states from which a batch is evaluated without waiting for more requests
+	 * @param maxWait maximum time a request waits for other requests (microseconds)
+	 */
+	public EvaluationService(int maxBatch, long maxWait) {
+		this.maxBatch = maxBatch;
+		this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWait);
+		this.evaluator = new BatchEvaluator();
+		this.queue = new ConcurrentLinkedQueue<Request>();
+		this.thread = new Thread(this::run, "evaluation-service");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public double evaluate(GameState game) {
+		return AI.heuristic(game);
+	}
+
+	public double evaluate(BeliefState state) {
+		return this.evaluateAsync(state).join();
+	}
+
+	public CompletableFuture<Double> evaluateAsync(BeliefState state) {
+		Geometry geometry = state.geometry();
+		if(geometry.rows * geometry.columns > 64 || this.closed)
+			return CompletableFuture.completedFuture(Evaluator.super.evaluate(state));
+		Request request = new Request(state);
+		this.queue.add(request);
+		//the service may have been closed since the check, and its thread may have stopped without the request: it is evaluated here unless the thread took it
+		if(this.closed && this.queue.remove(request)) {
+			request.value.complete(Evaluator.super.evaluate(state));
+			return request.value;
+		}
+		LockSupport.unpark(this.thread);
+		return request.value;
+	}
+
+	//loop of the thread of the service
+	private void run() {
+		ArrayList<Request> batch = new ArrayList<Request>();
+		long[] red = new long[0], yellow = new long[0];
+		float[] proba = new float[0];
+		double[] values = new double[0];
+		while(!this.closed || !this.queue.isEmpty()) {
+			Request first = this.queue.poll();
+			if(first == null) {
+				LockSupport.park(this);
+				continue;
+			}
+			//the batch gathers the requests of the same geometry until it is full or until the first request has waited long enough
+			batch.add(first);
+			int count = first.proba.length;
+			long deadline = first.time + this.maxWaitNanos;
+			while(count < this.maxBatch) {
+				Request next = this.queue.peek();
+				if(next != null && !next.geometry.equals(first.geometry))
+					break;
+				if(next != null) {
+					batch.add(this.queue.poll());
+					count += next.proba.length;
+					continue;
+				}
+				long wait = deadline - System.nanoTime();
+				if(wait <= 0 || this.closed)
+					break;
+				LockSupport.parkNanos(this, wait);
+			}
+
+			if(proba.length < count) {
+				int capacity = Math.max(count, 2 * proba.length);
+				red = new long[capacity];
+				yellow = new long[capacity];
+				proba = new float[capacity];
+				values = new double[capacity];
+			}
+			int n = 0;
+			for(Request request: batch) {
+				System.arraycopy(request.red, 0, red, n, request.red.length);
+				System.arraycopy(request.yellow, 0, yellow, n, request.yellow.length);
+				System.arraycopy(request.proba, 0, proba, n, request.proba.length);
+				n += request.proba.length;
+			}
+			try {
+				this.evaluator.evaluate(first.geometry, red, yellow, proba, n, values);
+				//the value of a belief state is the sum of the values of its states, in the order of the states as in Evaluator.evaluate(BeliefState)
+				n = 0;
+				for(Request request: batch) {
+					double value = 0.;
+					for(int i = 0; i < request.proba.length; i++) {
+						value += values[n++];
+					}
+					request.value.complete(value);
+				}
+			}
+			catch(RuntimeException e) {
+				for(Request request: batch) {
+					request.value.completeExceptionally(e);
+				}
+			}
+			this.batches++;
+			this.requests += batch.size();
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Return the mean number of belief states evaluated together
+	 * @return the number of belief states evaluated divided by the number of batches
+	 */
+	public double meanBatch() {
+		long batches = this.batches;
+		return batches == 0? 0.: (double) this.requests / batches;
+	}
+
+	/**
+	 * Evaluate the pending requests and stop the thread of the service (the next requests are evaluated by the threads of the searches)
+	 */
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public String toString() {
+		return "service";
+	}
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark of the EvaluationService: the same games (the opponent drawing its moves with a seeded generator) are played by concurrent searches, first with the default evaluator of their thread
+ * and then with an EvaluationService shared by all the searches. The number of moves per second is printed for both, and the moves of the AI are checked to be the same.
+ * usage: java EvaluationServiceBenchmark [threads] [games] [batch size in states] [maximum wait in microseconds]
+ */
+public class EvaluationServiceBenchmark {
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0? Integer.parseInt(args[0]): 2 * Runtime.getRuntime().availableProcessors();
+		int games = args.length > 1? Integer.parseInt(args[1]): 4 * threads;
+		int maxBatch = args.length > 2? Integer.parseInt(args[2]): 4096;
+		long maxWait = args.length > 3? Long.parseLong(args[3]): 200;
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		//warm-up
+		EvaluationServiceBenchmark.run(executor, threads, null);
+		long start = System.nanoTime();
+		ArrayList<String> local = EvaluationServiceBenchmark.run(executor, games, null);
+		long localNanos = System.nanoTime() - start;
+
+		EvaluationService service = new EvaluationService(maxBatch, maxWait);
+		start = System.nanoTime();
+		ArrayList<String> shared = EvaluationServiceBenchmark.run(executor, games, service);
+		long sharedNanos = System.nanoTime() - start;
+		service.close();
+
+		int moves = 0;
+		for(String game: local) {
+			moves += game.length();
+		}
+		System.out.println("threads = " + threads + " games = " + games + " moves = " + moves);
+		System.out.println("local   = " + String.format("%.1f", moves / (localNanos / 1e9)) + " moves/s");
+		System.out.println("service = " + String.format("%.1f", moves / (sharedNanos / 1e9)) + " moves/s"
+				+ " mean batch = " + String.format("%.1f", service.meanBatch()) + " belief states"
+				+ (local.equals(shared)? "": " MISMATCH"));
+		executor.shutdown();
+	}
+
+	/**
+	 * Play games concurrently
+	 * @param executor the threads of the searches
+	 * @param games the number of games, the game i being played with the seed i
+	 * @param service the evaluator shared by the searches, or null for the evaluators of each thread
+	 * @return the columns played in each game
+	 */
+	private static ArrayList<String> run(ExecutorService executor, int games, EvaluationService service) throws Exception {
+		ArrayList<Future<String>> futures = new ArrayList<Future<String>>();
+		for(int i = 0; i < games; i++) {
+			long seed = i;
+			futures.add(executor.submit(() -> {
+				if(service == null)
+					AI.setEvaluators(AI.DEFAULT_EVALUATOR, AI.DEFAULT_EVALUATOR);
+				else
+					AI.setEvaluators(service, service);
+				return EvaluationServiceBenchmark.play(new Random(seed));
+			}));
+		}
+		ArrayList<String> played = new ArrayList<String>();
+		for(Future<String> future: futures) {
+			played.add(future.get());
+		}
+		return played;
+	}
+
+	//play a game of the AI against ProbabilisticOpponentAI and return the columns played
+	private static String play(Random random) {
+		StringBuilder played = new StringBuilder();
+		GameState game = new GameState();
+		BeliefState beliefState = new BeliefState();
+		beliefState.add(game.copy());
+		while(!game.isGameOver() && !game.isFull()) {
+			int aiPlay = AI.findNextMove(beliefState);
+			played.append(aiPlay);
+			game.putPiece(aiPlay);
+			beliefState.setStates(beliefState.observePlayer(aiPlay, game));
+			if(game.isGameOver() || game.isFull())
+				break;
+			int opponentPlay = new ProbabilisticOpponentAI().decision(game, random);
+			played.append(opponentPlay);
+			game.putPiece(opponentPlay);
+			beliefState.setStates(beliefState.observeOpponent(game));
+		}
+		return played.toString();
+	}
+}
@@ -0,0 +1,45 @@
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Function used by the search to evaluate the states of the game (larger is better for the AI). The value of a game state is weighted by its probability,
+ * so that the value of a belief state is the sum of the values of its states.
+ * The search uses one evaluator to order the moves and one to evaluate the leaves (see AI.setEvaluators), so a cheap evaluator can be used for the ordering.
+ */
+public interface Evaluator {
+	/**
+	 * Computes the value of a game state
+	 * @param game the game state
+	 * @return the value of the game state, weighted by its probability
+	 */
+	double evaluate(GameState game);
+	
+	/**
+	 * Computes the value of a belief state
+	 * @param state the belief state
+	 * @return the sum of the values of the states of the belief state
+	 */
+	default double evaluate(BeliefState state) {
+		double value = 0.;
+		for(GameState game: state) {
+			value += this.evaluate(game);
+		}
+		return value;
+	}
+	
+	/**
+	 * Request the value of a belief state, which is used later by the search (see AI.request). By default the value is computed at once, an evaluator which evaluates
+	 * the belief states in batches (see EvaluationService) completes the value later, the search going on meanwhile.
+	 * @param state the belief state
+	 * @return the value of the belief state, when it is computed
+	 */
+	default CompletableFuture<Double> evaluateAsync(BeliefState state) {
+		return CompletableFuture.completedFuture(this.evaluate(state));
+	}
+	
+	/**
+	 * Prepare the evaluation of the belief states of a search, before the search starts (by default nothing is done)
+	 * @param root the belief state from which the search starts
+	 */
+	default void prepare(BeliefState root) {
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Benchmark of the evaluators of the search: for each configuration (ordering evaluator, leaf evaluator), the AI plays a number of games against ProbabilisticOpponentAI,
+ * and the node rate of the search (or-nodes and and-nodes per second of decision) is reported together with the results of the games.
+ * For the approximate evaluator of the belief states (OccupancyEvaluator), the error is measured on the belief states predicted during the games, against the sum of the values of the states
+ * computed without truncation: the truncation error (AI.heuristic rounds each term of a state towards zero) and the independence error (OccupancyEvaluator assumes that the squares are occupied
+ * independently) are reported separately.
+ * usage: java EvaluatorBenchmark [number of games per configuration]
+ */
+public class EvaluatorBenchmark {
+	public static void main(String[] args) {
+		int games = args.length > 0? Integer.parseInt(args[0]): 20;
+		Evaluator full = new HeuristicEvaluator();
+		Evaluator cheap = new AdjacencyEvaluator();
+		Evaluator occupancy = new OccupancyEvaluator();
+		Evaluator[][] configurations = new Evaluator[][] {{full, full}, {cheap, full}, {cheap, cheap}, {full, occupancy}};
+		ProbabilisticOpponentAI opponent = new ProbabilisticOpponentAI();
+		
+		for(Evaluator[] configuration: configurations) {
+			AI.setEvaluators(configuration[0], configuration[1]);
+			SearchMetrics.reset();
+			int win = 0, ties = 0;
+			long decisionNanos = 0;
+			//errors of the evaluations of the belief states with respect to the untruncated sum, relative to its mean absolute value
+			int errorSamples = 0;
+			double truncationError = 0, independenceError = 0, absoluteValue = 0, exactNanos = 0, approximateNanos = 0;
+			for(int i = 0; i < games; i++) {
+				GameState game = new GameState();
+				BeliefState beliefState = new BeliefState();
+				beliefState.add(game.copy());
+				while(!game.isGameOver() && !game.isFull()) {
+					long start = System.nanoTime();
+					int aiPlay = AI.findNextMove(beliefState);
+					decisionNanos += System.nanoTime() - start;
+					game.putPiece(aiPlay);
+					beliefState.setStates(BeliefState.filter(beliefState.putPiecePlayer(aiPlay), game));
+					if(game.isGameOver() || game.isFull())
+						break;
+					game.putPiece(opponent.decision(game));
+					Results predictions = beliefState.predict();
+					if(configuration[1] == occupancy) {
+						for(BeliefState prediction: predictions) {
+							long exactStart = System.nanoTime();
+							double exact = full.evaluate(prediction);
+							exactNanos += System.nanoTime() - exactStart;
+							long approximateStart = System.nanoTime();
+							double approximate = occupancy.evaluate(prediction);
+							approximateNanos += System.nanoTime() - approximateStart;
+							double untruncated = EvaluatorBenchmark.untruncated(prediction);
+							truncationError += Math.abs(exact - untruncated);
+							independenceError += Math.abs(approximate - untruncated);
+							absoluteValue += Math.abs(untruncated);
+							errorSamples++;
+						}
+					}
+					beliefState.setStates(BeliefState.filter(predictions, game));
+				}
+				if(game.isGameOver() && !game.turn()) {
+					win++;
+				}
+				else if(!game.isGameOver()) {
+					ties++;
+				}
+			}
+			double seconds = decisionNanos / 1e9;
+			System.out.println("ordering = " + configuration[0] + " leaves = " + configuration[1]);
+			System.out.println("  Win: " + win + " Ties: " + ties + " Loose: " + (games - win - ties) + " (" + games + " games)");
+			System.out.println("  decisions = " + SearchMetrics.decisions() + " mean time = " + String.format("%.2f", 1000 * seconds / Math.max(1, SearchMetrics.decisions())) + " ms"
+					+ " node rate = " + String.format("%.0f", SearchMetrics.nodes() / seconds) + " nodes/s"
+					+ " evaluations = " + SearchMetrics.heuristicEvaluations());
+			if(errorSamples > 0) {
+				System.out.println("  approximation: " + errorSamples + " belief states, mean absolute value = " + String.format("%.3f", absoluteValue / errorSamples)
+						+ " truncation error = " + String.format("%.3f", truncationError / errorSamples) + " (" + String.format("%.1f", 100 * truncationError / absoluteValue) + "%)"
+						+ " independence error = " + String.format("%.3f", independenceError / errorSamples) + " (" + String.format("%.1f", 100 * independenceError / absoluteValue) + "%)"
+						+ " exact = " + String.format("%.1f", exactNanos / errorSamples / 1000) + " us approximate = " + String.format("%.1f", approximateNanos / errorSamples / 1000) + " us");
+			}
+		}
+	}
+
+	/**
+	 * Computes the value of a belief state as the sum of the values of its states, as in AI.heuristic(GameState, Geometry) but without truncating the terms of each state
+	 * @param beliefState the belief state
+	 * @return the untruncated sum of the values of the states
+	 */
+	private static double untruncated(BeliefState beliefState) {
+		Geometry geometry = beliefState.geometry();
+		double value = 0.;
+		for(GameState game: beliefState) {
+			double stateValue = 0.;
+			for(int row = 0; row < geometry.rows; row++) {
+				for(int column = 0; column < geometry.columns; column++) {
+					int content = game.content(row, column);
+					if(content == 2)
+						stateValue += geometry.cweights[column] * geometry.rweights[row] * (geometry.heuristic[row][column] - AI.scan(game, geometry, row, column, 1));
+					if(content == 1)
+						stateValue -= geometry.cweights[column] * geometry.rweights[row] * (geometry.heuristic[row][column] - AI.scan(game, geometry, row, column, 2));
+				}
+			}
+			value += game.proba() * stateValue;
+		}
+		return value;
+	}
+}
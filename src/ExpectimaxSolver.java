@@ -0,0 +1,161 @@
+import java.util.HashMap;
+
+/**
+ * Solver for the fully visible positions (a single game state, e.g. when the belief state is reduced to one state). The AI plays the move with the best value and the moves of the opponent
+ * are chance nodes whose probabilities are given by ProbabilisticOpponentAI.policy. The values of the positions are kept in a transposition table, so that the positions reached
+ * by several orders of moves are solved once, and the moves of the AI are ordered so that a winning move stops the search of the position.
+ */
+public class ExpectimaxSolver {
+	//value of a won game, larger than any heuristic value
+	public final static double WIN = 1000.;
+	//default number of positions from which the transposition table is cleared (about 8 MB, a whole game solved at depth 3 stores fewer than 10000 positions)
+	public final static int DEFAULT_ENTRIES = 1 << 16;
+
+	/**
+	 * Value of a position in which it is the turn of the AI, with the number of moves of the AI searched to compute it and the best move found
+	 */
+	private static class Entry {
+		double value;
+		int depth;
+		int move;
+
+		Entry(double value, int depth, int move) {
+			this.value = value;
+			this.depth = depth;
+			this.move = move;
+		}
+	}
+
+	private int depth;
+	private int maxEntries;
+	private HashMap<GameState, Entry> transpositions;
+
+	/**
+	 * Construct a solver with a transposition table of DEFAULT_ENTRIES positions
+	 * @param depth number of moves of the AI considered
+	 */
+	public ExpectimaxSolver(int depth) {
+		this(depth, DEFAULT_ENTRIES);
+	}
+
+	/**
+	 * Construct a solver
+	 * @param depth number of moves of the AI considered
+	 * @param maxEntries number of positions from which the transposition table is cleared
+	 */
+	public ExpectimaxSolver(int depth, int maxEntries) {
+		this.depth = depth;
+		this.maxEntries = maxEntries;
+		this.transpositions = new HashMap<GameState, Entry>();
+	}
+
+	/**
+	 * Returns the best action to take in a position
+	 * @param state the position (it is the turn of the AI)
+	 * @return an integer which represents the column to play
+	 */
+	public int findNextMove(GameState state) {
+		MoveList moves = this.evaluate(state);
+		moves.sortByScore();
+		return moves.get(0);
+	}
+
+	/**
+	 * Compute the value of each move of the AI in a position
+	 * @param state the position (it is the turn of the AI, and the state is not modified)
+	 * @return the moves of the AI, the score of each move being its value
+	 */
+	public MoveList evaluate(GameState state) {
+		MoveList moves = new MoveList();
+		for(int column = 0; column < state.geometry().columns; column++) {
+			if(!state.isFull(column)) {
+				GameState copy = state.copy();
+				copy.setProba(1);
+				copy.putPiece(column);
+				moves.add(column, this.value(copy, this.depth - 1));
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Compute the value of a position
+	 * @param state the position (it is not modified, and its probability must be 1)
+	 * @param depth number of moves of the AI still considered
+	 * @return the value of the position for the AI
+	 */
+	private double value(GameState state, int depth) {
+		if(state.isGameOver())
+			return state.turn()? -WIN: WIN;
+		if(state.isFull())
+			return 0;
+
+		//the opponent plays with the probabilities of its policy
+		if(state.turn()) {
+			MoveList policy = ProbabilisticOpponentAI.policy(state);
+			double value = 0;
+			for(int i = 0; i < policy.size(); i++) {
+				GameState copy = state.copy();
+				copy.putPiece(policy.get(i));
+				value += policy.score(i) * this.value(copy, depth);
+			}
+			return value;
+		}
+
+		Entry entry = this.transpositions.get(state);
+		if(entry != null && entry.depth >= depth)
+			return entry.value;
+
+		//a winning move is played at once, whatever the depth
+		int columns = state.geometry().columns;
+		GameState[] children = new GameState[columns];
+		for(int column = 0; column < columns; column++) {
+			if(!state.isFull(column)) {
+				children[column] = state.copy();
+				children[column].putPiece(column);
+				if(children[column].isGameOver()) {
+					this.store(state, WIN, Integer.MAX_VALUE, column);
+					return WIN;
+				}
+			}
+		}
+		if(depth == 0)
+			return AI.heuristic(state);
+
+		//the best move of a previous search is tried first (its score is above the score of the centre column), then the moves from the centre to the sides
+		MoveList moves = new MoveList();
+		for(int column = 0; column < columns; column++) {
+			if(children[column] != null)
+				moves.add(column, entry != null && entry.move == column? columns + 1: columns - Math.abs(2 * column - columns + 1) / 2.);
+		}
+		moves.sortByScore();
+		double max = Double.NEGATIVE_INFINITY;
+		int best = moves.get(0);
+		for(int i = 0; i < moves.size(); i++) {
+			double value = this.value(children[moves.get(i)], depth - 1);
+			if(value > max) {
+				max = value;
+				best = moves.get(i);
+				//no move can be better than a won game
+				if(value >= WIN)
+					break;
+			}
+		}
+		this.store(state, max, depth, best);
+		return max;
+	}
+
+	private void store(GameState state, double value, int depth, int move) {
+		if(this.transpositions.size() >= this.maxEntries) {
+			this.transpositions.clear();
+		}
+		this.transpositions.put(state, new Entry(value, depth, move));
+	}
+
+	/**
+	 * Remove all the positions of the transposition table
+	 */
+	public void clear() {
+		this.transpositions.clear();
+	}
+}
@@ -0,0 +1,280 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch annotation of recorded games (see GameRecorder): each game is replayed from its records, the belief state of the AI being rebuilt with putPiecePlayer, predict and filter,
+ * and for each move of the AI the move chosen by the current engine (AI.findNextMove) is compared with the move that was played.
+ * The positions are searched in parallel on a work-stealing pool, the games being read while the previous ones are searched.
+ * The annotations are written game after game in the order of the file, and after each game the position of the next game in the record file is saved in a checkpoint file,
+ * so that an interrupted run restarts after the last game written (a game may be written twice if the run stops between the annotations and the checkpoint).
+ *
+ * Each line of the output is: offset of the game in the record file, number of the move in the game, column played, column chosen by the engine, 1 if they are the same (0 otherwise),
+ * size of the belief state, time of the decision of the engine (ns), time of the decision recorded (ns).
+ * With -check, games with moves undone after a move that the model of the opponent cannot play are recorded and replayed, and the positions found are checked.
+ * usage: java GameAnnotator records annotations [threads] | java GameAnnotator -check
+ */
+public class GameAnnotator {
+	//maximum number of games searched or waiting to be written, per thread of the pool
+	private final static int GAMES_PER_THREAD = 4;
+
+	/**
+	 * Move of the AI to annotate: the belief state before the move and the move that was played
+	 */
+	private static class Position {
+		final int ply;
+		final BeliefState beliefState;
+		final int played;
+		final long recordedNanos;
+
+		Position(int ply, BeliefState beliefState, int played, long recordedNanos) {
+			this.ply = ply;
+			this.beliefState = beliefState;
+			this.played = played;
+			this.recordedNanos = recordedNanos;
+		}
+	}
+
+	/**
+	 * Search of the positions of a game: each position is searched by its own subtask, and the annotations of the game are returned in the order of the moves
+	 */
+	private static class GameTask extends RecursiveTask<String> {
+		private static final long serialVersionUID = 1L;
+		final long offset;
+		final long nextOffset;
+		final ArrayList<Position> positions;
+
+		GameTask(long offset, long nextOffset, ArrayList<Position> positions) {
+			this.offset = offset;
+			this.nextOffset = nextOffset;
+			this.positions = positions;
+		}
+
+		protected String compute() {
+			ArrayList<RecursiveTask<String>> tasks = new ArrayList<RecursiveTask<String>>();
+			for(Position position: this.positions) {
+				tasks.add(new RecursiveTask<String>() {
+					private static final long serialVersionUID = 1L;
+
+					protected String compute() {
+						return GameTask.this.annotate(position);
+					}
+				});
+			}
+			ForkJoinTask.invokeAll(tasks);
+			StringBuilder annotations = new StringBuilder();
+			for(RecursiveTask<String> task: tasks) {
+				annotations.append(task.join());
+			}
+			return annotations.toString();
+		}
+
+		private String annotate(Position position) {
+			long start = System.nanoTime();
+			int move = AI.findNextMove(position.beliefState);
+			long nanos = System.nanoTime() - start;
+			return this.offset + "," + position.ply + "," + position.played + "," + move + "," + (move == position.played? 1: 0) + ","
+					+ position.beliefState.size() + "," + nanos + "," + position.recordedNanos + "\n";
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		if(args.length > 0 && args[0].equals("-check")) {
+			GameAnnotator.check();
+			return;
+		}
+		Path records = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		Path checkpoint = Paths.get(args[1] + ".checkpoint");
+		int threads = args.length > 2? Integer.parseInt(args[2]): Runtime.getRuntime().availableProcessors();
+
+		long start = System.nanoTime();
+		long restart = Files.exists(checkpoint)? Long.parseLong(new String(Files.readAllBytes(checkpoint), StandardCharsets.US_ASCII).trim()): 0;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		ArrayDeque<GameTask> pending = new ArrayDeque<GameTask>();
+		long games = 0, positions = 0;
+		try(GameRecordReader reader = new GameRecordReader(records);
+				BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.US_ASCII, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			reader.seek(restart);
+			GameTask game;
+			while((game = GameAnnotator.readGame(reader)) != null) {
+				pool.execute(game);
+				pending.add(game);
+				games++;
+				positions += game.positions.size();
+				//the games are written in order, at most GAMES_PER_THREAD games per thread are kept in memory
+				while(pending.size() >= GAMES_PER_THREAD * threads || (!pending.isEmpty() && pending.peek().isDone())) {
+					GameAnnotator.write(pending.poll(), writer, checkpoint);
+				}
+			}
+			while(!pending.isEmpty()) {
+				GameAnnotator.write(pending.poll(), writer, checkpoint);
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		System.out.println("games = " + games + " positions = " + positions + " time = " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	//move of the opponent which its model cannot play after the moves of UNREACHABLE_PREFIX
+	private final static int[] UNREACHABLE_PREFIX = new int[] {4, 3, 3, 2, 5, 0, 0, 6, 2};
+	private final static int UNREACHABLE = 4;
+
+	/**
+	 * Record games with undone moves and check the positions found by readGame: after a move that cannot be rebuilt, no position is annotated until the move is undone
+	 */
+	private static void check() throws IOException {
+		Path file = Files.createTempFile("records", ".c4r");
+		try {
+			try(GameRecorder recorder = new GameRecorder(file, Geometry.DEFAULT)) {
+				//undoing a move played after the unreachable move keeps the belief state lost, so the move of the AI played instead is not annotated
+				ArrayList<GameState> history = GameAnnotator.record(recorder, UNREACHABLE_PREFIX);
+				GameAnnotator.play(recorder, history, UNREACHABLE);
+				GameAnnotator.play(recorder, history, 1);
+				GameAnnotator.undo(recorder, history);
+				GameAnnotator.play(recorder, history, 6);
+				//undoing the unreachable move (and the move of the AI before it, after which the only move of the opponent wins the game) rebuilds the belief state
+				history = GameAnnotator.record(recorder, UNREACHABLE_PREFIX);
+				GameAnnotator.play(recorder, history, UNREACHABLE);
+				GameAnnotator.undo(recorder, history);
+				GameAnnotator.undo(recorder, history);
+				GameAnnotator.play(recorder, history, 1);
+				GameAnnotator.play(recorder, history, 5);
+				GameAnnotator.play(recorder, history, 6);
+			}
+			try(GameRecordReader reader = new GameRecordReader(file)) {
+				GameAnnotator.check("move after the lost belief state undone", GameAnnotator.readGame(reader), "0:4 2:3 4:5 6:0 8:2");
+				GameAnnotator.check("unreachable move undone", GameAnnotator.readGame(reader), "0:4 2:3 4:5 6:0 8:1 10:6");
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	//start a game and play moves, returning the states of the game from the start (the last one being the current state)
+	private static ArrayList<GameState> record(GameRecorder recorder, int[] columns) {
+		recorder.gameStart();
+		ArrayList<GameState> history = new ArrayList<GameState>();
+		history.add(new GameState());
+		for(int column: columns) {
+			GameAnnotator.play(recorder, history, column);
+		}
+		return history;
+	}
+
+	private static void play(GameRecorder recorder, ArrayList<GameState> history, int column) {
+		GameState game = history.get(history.size() - 1).copy();
+		int player = game.turn()? 1: 2;
+		game.putPiece(column);
+		recorder.move(player, column, game, 0);
+		history.add(game);
+	}
+
+	private static void undo(GameRecorder recorder, ArrayList<GameState> history) {
+		history.remove(history.size() - 1);
+		recorder.undo();
+	}
+
+	//compare the positions of a game (ply:column played) with the expected ones
+	private static void check(String name, GameTask game, String expected) {
+		StringBuilder positions = new StringBuilder();
+		for(Position position: game.positions) {
+			positions.append(positions.length() == 0? "": " ").append(position.ply).append(':').append(position.played);
+		}
+		System.out.println(name + ": " + (positions.toString().equals(expected)? "OK": "FAILED, positions " + positions + " instead of " + expected));
+	}
+
+	/**
+	 * Write the annotations of a game (waiting for its search) and save the position of the next game in the checkpoint file
+	 */
+	private static void write(GameTask game, BufferedWriter writer, Path checkpoint) throws IOException, InterruptedException, ExecutionException {
+		writer.write(game.get());
+		writer.flush();
+		Path temporary = Paths.get(checkpoint + ".tmp");
+		Files.write(temporary, Long.toString(game.nextOffset).getBytes(StandardCharsets.US_ASCII));
+		Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read the records of the next game and replay it to build the positions to annotate. The records before the start of a game are skipped,
+	 * and the game ends with its GAME_END record, with the start of the next game or with the end of the file. A game with a GAP record is incomplete, and has no position to annotate.
+	 * @param reader the reader of the records
+	 * @return the task annotating the game, or null at the end of the file
+	 */
+	static GameTask readGame(GameRecordReader reader) throws IOException {
+		boolean found = false;
+		while(!found && reader.next()) {
+			found = reader.type() == GameRecorder.GAME_START;
+		}
+		if(!found)
+			return null;
+		long offset = reader.offset();
+		long nextOffset = reader.nextOffset();
+
+		GameState game = new GameState(reader.geometry());
+		BeliefState beliefState = new BeliefState(reader.geometry());
+		beliefState.add(game.copy());
+		//states before each move, to replay the undone moves
+		ArrayList<GameState> games = new ArrayList<GameState>();
+		ArrayList<BeliefState> beliefStates = new ArrayList<BeliefState>();
+		ArrayList<Position> positions = new ArrayList<Position>();
+		//number of moves after which the belief state could not be rebuilt (a move that the model of the opponent cannot play), or -1
+		int lost = -1;
+		boolean damaged = false;
+		while(reader.next()) {
+			if(reader.type() == GameRecorder.GAME_START) {
+				//the game has been abandoned, the next game starts at this record
+				reader.seek(reader.offset());
+				break;
+			}
+			nextOffset = reader.nextOffset();
+			if(reader.type() == GameRecorder.GAME_END)
+				break;
+			if(reader.type() == GameRecorder.GAP) {
+				damaged = true;
+				continue;
+			}
+			if(reader.type() == GameRecorder.UNDO) {
+				if(!games.isEmpty()) {
+					game = games.remove(games.size() - 1);
+					beliefState = beliefStates.remove(beliefStates.size() - 1);
+					positions.removeIf(position -> position.ply >= games.size());
+					if(games.size() < lost)
+						lost = -1;
+				}
+				continue;
+			}
+			games.add(game.copy());
+			beliefStates.add(beliefState);
+			int column = reader.column();
+			if(reader.player() == 2 && lost < 0) {
+				positions.add(new Position(games.size() - 1, beliefState, column, reader.nanos()));
+			}
+			game.putPiece(column);
+			if(lost < 0) {
+				//the previous belief state is not modified, it is kept for the positions and the undone moves
+				BeliefState observed = reader.player() == 2? beliefState.observePlayer(column, game): beliefState.observeOpponent(game);
+				if(observed == null)
+					lost = games.size();
+				else
+					beliefState = observed;
+			}
+		}
+		if(damaged)
+			positions.clear();
+		return new GameTask(offset, nextOffset, positions);
+	}
+}
@@ -3,214 +3,153 @@ import java.util.Stack;
 
 public class GameDisplay {
 	private GameState game;
-	private Boolean[][] pieces; //true = red, false = yellow, null = no piece
 	private Stack<Point> moves;
 	private String error;
-	private boolean gameOver;
-	private boolean redWins;
-	private boolean yellowWins;
-	private boolean redsTurn;
+	//states of the game (and snapshots of the belief state) before each move, and the moves that have been undone with the states that they led to
+	private Stack<GameState> history;
+	private Stack<BeliefState> beliefs;
+	private Stack<Point> undoneMoves;
+	private Stack<GameState> undoneStates;
+	private Stack<BeliefState> undoneBeliefs;
+	//records the moves of the games if it is not null
+	private GameRecorder recorder;
 	
 	//starts the game on red's turn
 	public GameDisplay() {
-		pieces = new Boolean[7][6];
-		gameOver = false;
-		redWins = false;
-		yellowWins = false;
-		redsTurn = true;
 		moves = new Stack<>();
+		history = new Stack<>();
+		beliefs = new Stack<>();
+		undoneMoves = new Stack<>();
+		undoneStates = new Stack<>();
+		undoneBeliefs = new Stack<>();
 		this.game = new GameState();
 	}
 	
 	//resets the error message and tries to move the next piece into the specified row
 	//if the move is invalid, sets the proper error message
 	public void move(int row) {
-		this.game.putPiece(row-1);
+		move(row, null);
+	}
+	
+	//same as move(row), the belief state (which has not been updated yet) is kept so that undo can restore it
+	public void move(int row, BeliefState beliefState) {
 		error = null;
 		//can't make a move if the game is over
-		if(gameOver) setErrorMessage();
+		if(getGameOver()) setErrorMessage();
 		//can't make a move if the specified row is full
 		else
-			if(pieces[row - 1][5] != null)
+			if(game.isFull(row - 1))
 				setErrorMessage();
-		//finds the next open space in the specified row
+		//puts the piece in the next open space of the specified row, the game state checks if the move won the game
 		else {
+			history.push(game.copy());
+			beliefs.push(beliefState == null? null: beliefState.snapshot());
+			int player = game.turn()? 1: 2;
+			game.putPiece(row - 1);
+			record(player, row - 1, beliefState);
 			int y = 0;
-			while(pieces[row - 1][y] != null) {
+			while(y + 1 < game.geometry().rows && game.content(y + 1, row - 1) != 0) {
 				y++;
 			}
-			//sets the piece to true or false depending on whose turn it is
-			pieces[row-1][y] = redsTurn;
 			//adds the move to the list of moves
 			moves.push(new Point(row - 1, y));
-			//switches the turns
-			redsTurn = !redsTurn;
-			//checks if the move won the game
-			checkForWin();
+			//a new move makes the undone moves impossible to redo
+			undoneMoves.clear();
+			undoneStates.clear();
+			undoneBeliefs.clear();
 		}
 	}
 	
-	//resets the error message, undoes the last move, removing the last piece and
-	//switches back the turns accordingly
+	//resets the error message, undoes the last move and restores the state of the game (and the belief state) as it was before the move
 	//if there are no moves to undo, sets the proper error message
-	/*public void undo() {
+	public void undo(BeliefState beliefState) {
 		error = null;
 		//can't undo if it is the first move
-		if (moves.empty()) setErrorMessage();
+		if (moves.empty()) error = "No moves to undo.";
 		else {
-			//removes the last move from the list of moves
-			Point lastMove = moves.pop();
-			//removes the last move from the board
-			pieces[(int)lastMove.getX()][(int)lastMove.getY()] = null;
-			//switches back the turns
-			redsTurn = !redsTurn;
-			//resets the game over booleans if the previous move had won the game
-			if(gameOver) {
-				gameOver = false;
-				redWins = false;
-				yellowWins = false;
-			}
+			undoneMoves.push(moves.pop());
+			undoneStates.push(game);
+			game = history.pop();
+			if(recorder != null) recorder.undo();
+			BeliefState snapshot = beliefs.pop();
+			undoneBeliefs.push(beliefState == null? null: beliefState.snapshot());
+			if(beliefState != null && snapshot != null)
+				beliefState.setStates(snapshot);
+		}
+	}
+	
+	//resets the error message and plays again the last move that has been undone
+	//if there are no moves to redo, sets the proper error message
+	public void redo(BeliefState beliefState) {
+		error = null;
+		if (undoneMoves.empty()) error = "No moves to redo.";
+		else {
+			moves.push(undoneMoves.pop());
+			history.push(game);
+			int player = game.turn()? 1: 2;
+			game = undoneStates.pop();
+			record(player, (int) moves.peek().getX(), beliefState);
+			BeliefState snapshot = undoneBeliefs.pop();
+			beliefs.push(beliefState == null? null: beliefState.snapshot());
+			if(beliefState != null && snapshot != null)
+				beliefState.setStates(snapshot);
 		}
-	}*/
+	}
+	
+	public boolean canUndo() {
+		return !moves.empty();
+	}
+	
+	public boolean canRedo() {
+		return !undoneMoves.empty();
+	}
 	
 	//resets the board to its initial state
 	public void restart() {
-		pieces = new Boolean[7][6];
-		gameOver = false;
-		redWins = false;
-		yellowWins = false;
-		redsTurn = true;
+		if(recorder != null && getGameOver()) recorder.gameEnd(game);
 		moves.clear();
+		history.clear();
+		beliefs.clear();
+		undoneMoves.clear();
+		undoneStates.clear();
+		undoneBeliefs.clear();
 		error = null;
 		this.game = new GameState();
+		if(recorder != null) recorder.gameStart();
 	}
 	
-	//checks for a win, and sets the game winning booleans accordingly
-	private void checkForWin() {
-		gameOver = false;
-		redWins = false;
-		yellowWins = false;
-		//checks for red win
-		if(fourInARow(true)) {
-			gameOver = true;
-			redWins = true;
-		}
-		//checks for yellow win
-		else if(fourInARow(false)) {
-			gameOver = true;
-			yellowWins = true;
-		}
-		//checks if it's a tie
-		else {
-			//if there are no empty spaces in the top row (and no one has won) it's a tie
-			for(int i = 0; i < pieces.length; i++) {
-				if(pieces[i][pieces[0].length - 1] == null) break;
-				else if(i == pieces.length - 1) gameOver = true;
-			}
-		}
-		
-	}
-	
-	//checks the board for all possible 4 in a row combinations of the specified color
-	//true checks for red, false checks for yellow
-	private boolean fourInARow(boolean color) {
-		//vertical
-		//runs through each column, from bottom to top
-		for(int i = 0; i < pieces.length; i++) {
-			//initializes a 4-in-a-row counter
-			int count = 0;
-			for(int j = 0; j < pieces[0].length; j++) {
-				//if there is no piece, there can be no pieces above it either
-				//so there is no reason to continue checking this column
-				if(pieces[i][j] == null) break;
-				//if there is a piece in this position, and it is of the color we are 
-				//checking for, increase the count
-				else if(pieces[i][j] == color) count ++;
-				//otherwise, reset the count
-				else count = 0;
-				//if the count is 4, then we have found 4 in a row and can return true
-				if(count == 4) {
-					return true;
-				}
-			}
-		}
-		//horizontal
-		//runs through each row, from left to right
-		for(int j = 0; j < pieces[0].length; j++) {
-			//initializes a 4-in-a-row counter
-			int count = 0;
-			for(int i = 0; i < pieces.length; i++) {
-				//if there is a piece in this position, and it is of the color we are 
-				//checking for, increase the count
-				if(pieces[i][j] == null || pieces[i][j] == !color) count = 0;
-				//otherwise, reset the count
-				else count++;
-				//if the count is 4, then we have found 4 in a row and can return true
-				if(count == 4) {
-					return true;
-				}
-				//if there are less spots left in this row than are needed to complete
-				//a four in a row, there is no need to continue checking this row
-				if(4 - (pieces.length) - 1 - i > count) break;
-			}
-		}
-		//diagonal ( \ )
-		//runs through each diagonal, from bottom-right to top-left
-		for(int i = 3; i < pieces.length + 2; i++) {
-			//initializes a 4-in-a-row counter
-			int count = 0;
-			for(int j = 0; (i - j) >= 0 && j < pieces[0].length; j++) {
-				if(i - j < pieces.length) {
-					//if there is a piece in this position, and it is of the color we are 
-					//checking for, increase the count
-					if(pieces[i - j][j] == null || pieces[i - j][j] == !color) count = 0;
-					//otherwise, reset the count
-					else count++;
-					//if the count is 4, then we have found 4 in a row and can return true
-					if(count == 4) {
-						return true;
-					}
-					//if there are less spots left in this diagonal than are needed to complete
-					//a four in a row, there is no need to continue checking this diagonal
-					if(4 - (pieces[0].length) - 1 - i > count) break;
-				}
-			}
-		}
-		//diagonal ( / )
-		//runs through each diagonal, from bottom-left to top-right
-		for(int i = 3; i >= -2; i--) {
-			//initializes a 4-in-a-row counter
-			int count = 0;
-			for(int j = 0; (i + j) < pieces.length && j < pieces[0].length; j++) {
-				if(i + j >= 0) {
-					//if there is a piece in this position, and it is of the color we are 
-					//checking for, increase the count
-					if(pieces[i + j][j] == null || pieces[i + j][j] == !color) count = 0;
-					//otherwise, reset the count
-					else count++;
-					//if the count is 4, then we have found 4 in a row and can return true
-					if(count == 4) {
-						return true;
-					}
-					//if there are less spots left in this diagonal than are needed to complete
-					//a four in a row, there is no need to continue checking this diagonal
-					if(4 - (pieces[0].length) - 1 - i > count) break;
-				}
-			}
-		}
-		//if no 4-in-a-row combination was found, return false
-		return false;
+	//records the games in the given recorder (or stops recording if it is null), starting with the current game
+	//the end of the current game is recorded in the previous recorder if it is over
+	public void setRecorder(GameRecorder recorder) {
+		if(this.recorder != null && getGameOver()) this.recorder.gameEnd(game);
+		this.recorder = recorder;
+		if(recorder != null) recorder.gameStart();
+	}
+	
+	//records a move, the belief state being the one before the move
+	//the end of the game is recorded when the game is left (see restart and setRecorder), since the last move can still be undone
+	private void record(int player, int column, BeliefState beliefState) {
+		if(recorder == null) return;
+		recorder.move(player, column, game, beliefState == null? 0: beliefState.size());
 	}
 	
 	//sets the proper error message after an invalid move is made
 	private void setErrorMessage() {
-		if(gameOver) error = "The game is over.";
-		else if(moves.empty()) error = "No moves to undo.";
+		if(getGameOver()) error = "The game is over.";
 		else error =  "That row is full.";
 	}
 	
-	public Boolean[][] getPieces(){
-		return pieces;
+	//returns 0 for an empty space, 1 for a yellow piece and 2 for a red piece
+	public int getPiece(int column, int row) {
+		return game.content(row, column);
+	}
+	
+	public int getColumns() {
+		return game.geometry().columns;
+	}
+	
+	public int getRows() {
+		return game.geometry().rows;
 	}
 	
 	public Stack<Point> getMoves(){
@@ -221,20 +160,22 @@ public class GameDisplay {
 		return error;
 	}
 	
+	//the game state keeps the turn of the player who won
 	public boolean getRedWins(){
-		return redWins;
+		return game.isGameOver() && !game.turn();
 	}
 	
 	public boolean getYellowWins(){
-		return yellowWins;
+		return game.isGameOver() && game.turn();
 	}
 	
 	public boolean getRedsTurn(){
-		return redsTurn;
+		return !game.turn();
 	}
 	
+	//the game is over if a player won or if the board is full (tie)
 	public boolean getGameOver(){
-		return gameOver;
+		return game.isGameOver() || game.isFull();
 	}
 	
 	public GameState getState() {
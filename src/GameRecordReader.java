@@ -0,0 +1,213 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader of the files written by GameRecorder. The file is memory-mapped by windows of WINDOW bytes, so it can be scanned at the speed of the disk whatever its size.
+ * The records are read one after the other with next(), and the fields of the current record are given by the accessors.
+ * usage: java GameRecordReader file (prints a summary of the games of the file)
+ */
+public class GameRecordReader implements Closeable {
+	private final static long WINDOW = 1L << 26;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final Geometry geometry;
+	private final int moveSize;
+	private MappedByteBuffer window;
+	//position of the window in the file
+	private long windowStart;
+	//position of the current record in the file, and of the next record
+	private long offset;
+	private long nextOffset;
+
+	private byte type;
+	private int player;
+	private int column;
+	private byte[] visible;
+	private int beliefSize;
+	private long nanos;
+	private long startTime;
+	private int result;
+
+	/**
+	 * Open a file of game records
+	 * @param file the file
+	 * @throws IOException if the file cannot be read or is not a file of game records
+	 */
+	public GameRecordReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.fileSize = this.channel.size();
+		this.map(0);
+		if(this.fileSize < GameRecorder.HEADER_SIZE || this.window.getInt(0) != GameRecorder.MAGIC) {
+			this.channel.close();
+			throw new IOException("Not a file of game records: " + file);
+		}
+		if(this.window.get(4) < 1 || this.window.get(4) > GameRecorder.VERSION) {
+			this.channel.close();
+			throw new IOException("Unsupported version of game records: " + this.window.get(4));
+		}
+		this.geometry = Geometry.of(this.window.get(5), this.window.get(6), this.window.get(7));
+		this.moveSize = GameRecorder.moveSize(this.geometry);
+		this.visible = new byte[this.geometry.visibleBytes];
+		this.offset = GameRecorder.HEADER_SIZE;
+		this.nextOffset = GameRecorder.HEADER_SIZE;
+	}
+
+	private void map(long start) throws IOException {
+		this.windowStart = start;
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, this.fileSize - start));
+	}
+
+	public Geometry geometry() {
+		return this.geometry;
+	}
+
+	/**
+	 * Move to the record starting at a given position of the file (a value returned by offset() or nextOffset())
+	 * @param offset the position of the record
+	 */
+	public void seek(long offset) {
+		this.nextOffset = Math.max(offset, GameRecorder.HEADER_SIZE);
+	}
+
+	/**
+	 * Read the next record
+	 * @return true if a record has been read, and false at the end of the file (or if the last record is incomplete)
+	 * @throws IOException if the file cannot be read or contains an unknown record
+	 */
+	public boolean next() throws IOException {
+		if(this.nextOffset >= this.fileSize)
+			return false;
+		//the record must be entirely in the window (a move record is the largest one)
+		long windowEnd = this.windowStart + this.window.capacity();
+		if(this.nextOffset < this.windowStart || this.nextOffset >= windowEnd || (this.nextOffset + this.moveSize > windowEnd && windowEnd < this.fileSize))
+			this.map(this.nextOffset);
+		int position = (int) (this.nextOffset - this.windowStart);
+		int available = (int) Math.min(this.window.capacity() - position, this.fileSize - this.nextOffset);
+		byte type = this.window.get(position);
+		int size;
+		switch(type) {
+		case GameRecorder.GAME_START: size = 9; break;
+		case GameRecorder.MOVE: size = this.moveSize; break;
+		case GameRecorder.UNDO: size = 1; break;
+		case GameRecorder.GAME_END: size = 2; break;
+		case GameRecorder.GAP: size = 1; break;
+		default: throw new IOException("Unknown record " + type + " at offset " + this.nextOffset);
+		}
+		if(size > available)
+			return false;
+		this.type = type;
+		switch(type) {
+		case GameRecorder.GAME_START:
+			this.startTime = this.window.getLong(position + 1);
+			break;
+		case GameRecorder.MOVE:
+			this.player = this.window.get(position + 1);
+			this.column = this.window.get(position + 2);
+			for(int i = 0; i < this.visible.length; i++) {
+				this.visible[i] = this.window.get(position + 3 + i);
+			}
+			this.beliefSize = this.window.getInt(position + 3 + this.visible.length);
+			this.nanos = this.window.getLong(position + 7 + this.visible.length);
+			break;
+		case GameRecorder.GAME_END:
+			this.result = this.window.get(position + 1);
+			break;
+		}
+		this.offset = this.nextOffset;
+		this.nextOffset += size;
+		return true;
+	}
+
+	/**
+	 * Return the type of the current record
+	 * @return GameRecorder.GAME_START, MOVE, UNDO, GAME_END or GAP
+	 */
+	public byte type() {
+		return this.type;
+	}
+
+	//position of the current record in the file
+	public long offset() {
+		return this.offset;
+	}
+
+	//position of the next record in the file
+	public long nextOffset() {
+		return this.nextOffset;
+	}
+
+	public int player() {
+		return this.player;
+	}
+
+	public int column() {
+		return this.column;
+	}
+
+	/**
+	 * Check if a square was visible by the AI after the move of the current record
+	 * @param row index of the row
+	 * @param column index of the column
+	 * @return true if the square was visible
+	 */
+	public boolean isVisible(int row, int column) {
+		int pos = row * this.geometry.columns + column;
+		return ((this.visible[pos / 8] >> (pos % 8)) & 1) != 0;
+	}
+
+	public int beliefSize() {
+		return this.beliefSize;
+	}
+
+	public long nanos() {
+		return this.nanos;
+	}
+
+	public long startTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Return the result of the game of the current GAME_END record
+	 * @return 0 for a tie, 1 if yellow won and 2 if red won
+	 */
+	public int result() {
+		return this.result;
+	}
+
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		long games = 0, moves = 0, aiMoves = 0, aiNanos = 0, undos = 0, gaps = 0;
+		long[] results = new long[3];
+		try(GameRecordReader reader = new GameRecordReader(java.nio.file.Paths.get(args[0]))) {
+			while(reader.next()) {
+				switch(reader.type()) {
+				case GameRecorder.GAME_START: games++; break;
+				case GameRecorder.MOVE:
+					moves++;
+					if(reader.player() == 2) {
+						aiMoves++;
+						aiNanos += reader.nanos();
+					}
+					break;
+				case GameRecorder.UNDO: undos++; break;
+				case GameRecorder.GAME_END: results[reader.result()]++; break;
+				case GameRecorder.GAP: gaps++; break;
+				}
+			}
+			System.out.println("geometry = " + reader.geometry() + " games = " + games + " moves = " + moves + " undone = " + undos + " gaps = " + gaps);
+		}
+		System.out.println("Win: " + results[2] + " Ties: " + results[0] + " Loose: " + results[1]
+				+ " mean AI time = " + String.format("%.2f", aiNanos / 1e6 / Math.max(1, aiMoves)) + " ms"
+				+ " read in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
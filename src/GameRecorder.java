@@ -0,0 +1,236 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Recorder of the games in a compact binary file. The records are built by the threads which play the games and handed to a RecordRingBuffer,
+ * a background thread takes them from the buffer and writes them to the file through a FileChannel, so recording a move only costs the encoding of a few bytes.
+ * If the writer cannot keep up and the buffer is full, the records are dropped (see dropped()) rather than blocking the game, and a GAP record is written before the next record
+ * which fits in the buffer, so that the reader knows that the game in progress is incomplete.
+ *
+ * Format of the file (big-endian, see GameRecordReader):
+ *   header:     int MAGIC, byte VERSION, byte rows, byte columns, byte k
+ *   GAME_START: byte type, long time of the start of the game (milliseconds since the epoch)
+ *   MOVE:       byte type, byte player (1 yellow, 2 red), byte column, visibleBytes bytes of percept (one bit per square, see BeliefState.visibility),
+ *               int size of the belief state before the move, long nanoseconds elapsed since the previous move (the time of the decision of the player)
+ *   UNDO:       byte type (the last move is undone)
+ *   GAME_END:   byte type, byte result (0 tie, 1 yellow wins, 2 red wins), written when a finished game is left (restart or end of the recording), so the last moves can still be undone
+ *   GAP:        byte type (records have been dropped just before this one)
+ */
+public class GameRecorder implements Closeable {
+	public final static int MAGIC = 0x43344752;
+	//the version 1 has no GAP record
+	public final static byte VERSION = 2;
+	public final static int HEADER_SIZE = 8;
+	public final static byte GAME_START = 1;
+	public final static byte MOVE = 2;
+	public final static byte UNDO = 3;
+	public final static byte GAME_END = 4;
+	public final static byte GAP = 5;
+	//system property giving the file in which Connect4UI records its games
+	public final static String PROPERTY = "connect4.record";
+
+	private final static int BUFFER_SIZE = 1 << 16;
+	private final static long IDLE_NANOS = 200_000;
+
+	private final Geometry geometry;
+	private final FileChannel channel;
+	private final RecordRingBuffer queue;
+	private final Thread writer;
+	private final AtomicLong dropped;
+	//number of threads adding a record, closed once no record is accepted, and stopping once the threads which passed the check of closed have added their record
+	private final AtomicInteger producers;
+	private volatile boolean closed;
+	private volatile boolean stopping;
+	private volatile IOException failure;
+	//time of the last move, and true if records have been dropped since the last record written, only used by the thread which plays the game
+	private long lastMove;
+	private boolean gap;
+
+	/**
+	 * Create a recorder writing in a file (the file is replaced if it exists)
+	 * @param file the file
+	 * @param geometry the geometry of the games
+	 * @throws IOException if the file cannot be opened
+	 */
+	public GameRecorder(Path file, Geometry geometry) throws IOException {
+		this.geometry = geometry;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).put(VERSION).put((byte) geometry.rows).put((byte) geometry.columns).put((byte) geometry.k);
+		header.flip();
+		while(header.hasRemaining()) {
+			this.channel.write(header);
+		}
+		this.queue = new RecordRingBuffer(1 << 14);
+		this.dropped = new AtomicLong();
+		this.producers = new AtomicInteger();
+		this.writer = new Thread(this::write, "game-recorder");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		this.lastMove = System.nanoTime();
+	}
+
+	/**
+	 * Create the recorder of the file given by the system property connect4.record
+	 * @param geometry the geometry of the games
+	 * @return the recorder, or null if the property is not set or if the file cannot be opened
+	 */
+	public static GameRecorder fromProperty(Geometry geometry) {
+		String file = System.getProperty(PROPERTY);
+		if(file == null)
+			return null;
+		try {
+			return new GameRecorder(Paths.get(file), geometry);
+		}
+		catch(IOException e) {
+			System.err.println("Cannot record the games in " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Size of a move record for a geometry
+	 * @param geometry the geometry of the games
+	 * @return the number of bytes of a move record
+	 */
+	public static int moveSize(Geometry geometry) {
+		return 3 + geometry.visibleBytes + 4 + 8;
+	}
+
+	public void gameStart() {
+		this.lastMove = System.nanoTime();
+		this.offer(ByteBuffer.allocate(9).put(GAME_START).putLong(System.currentTimeMillis()).array());
+	}
+
+	/**
+	 * Record a move
+	 * @param player 1 for the opponent (yellow) and 2 for the AI (red)
+	 * @param column the column played
+	 * @param state the state of the game after the move
+	 * @param beliefSize the size of the belief state of the AI before the move
+	 */
+	public void move(int player, int column, GameState state, int beliefSize) {
+		long now = System.nanoTime();
+		ByteBuffer record = ByteBuffer.allocate(GameRecorder.moveSize(this.geometry));
+		record.put(MOVE).put((byte) player).put((byte) column);
+		for(byte b: BeliefState.visibility(state)) {
+			record.put((byte) (b + 128));
+		}
+		record.putInt(beliefSize).putLong(now - this.lastMove);
+		this.lastMove = now;
+		this.offer(record.array());
+	}
+
+	public void undo() {
+		this.lastMove = System.nanoTime();
+		this.offer(new byte[] {UNDO});
+	}
+
+	/**
+	 * Record the end of a game
+	 * @param state the final state of the game
+	 */
+	public void gameEnd(GameState state) {
+		byte result = 0;
+		if(state.isGameOver())
+			result = (byte) (state.turn()? 1: 2);
+		this.offer(new byte[] {GAME_END, result});
+	}
+
+	/**
+	 * Return the number of records which could not be written because the buffer was full
+	 * @return the number of dropped records
+	 */
+	public long dropped() {
+		return this.dropped.get();
+	}
+
+	//a record is written only after the GAP record marking the records dropped before it
+	private void offer(byte[] record) {
+		if(this.gap)
+			this.gap = !this.push(new byte[] {GAP});
+		if(this.gap || !this.push(record)) {
+			this.dropped.incrementAndGet();
+			this.gap = true;
+		}
+	}
+
+	//the record is either in the queue before the writer stops or refused (see close)
+	private boolean push(byte[] record) {
+		this.producers.incrementAndGet();
+		try {
+			if(this.closed || !this.queue.offer(record))
+				return false;
+		}
+		finally {
+			this.producers.decrementAndGet();
+		}
+		LockSupport.unpark(this.writer);
+		return true;
+	}
+
+	//loop of the background thread: the records are gathered in a buffer which is written when it is full or when there is no more record to write
+	private void write() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		try {
+			while(true) {
+				boolean closing = this.stopping;
+				byte[] record = this.queue.poll();
+				if(record != null) {
+					if(buffer.remaining() < record.length) {
+						this.flush(buffer);
+					}
+					buffer.put(record);
+					continue;
+				}
+				this.flush(buffer);
+				//the queue is empty and no record can be added since stopping was read, all the records have been written
+				if(closing)
+					break;
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		catch(IOException e) {
+			this.failure = e;
+		}
+	}
+
+	private void flush(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Write the remaining records and close the file
+	 * @throws IOException if a record could not be written
+	 */
+	public void close() throws IOException {
+		this.closed = true;
+		//the threads which read closed before it was set finish adding their record, the next ones see it and refuse their record
+		while(this.producers.get() > 0) {
+			Thread.yield();
+		}
+		this.stopping = true;
+		LockSupport.unpark(this.writer);
+		try {
+			this.writer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.channel.close();
+		if(this.failure != null)
+			throw this.failure;
+	}
+}
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Game played by the AI (red) against a remote opponent (yellow) in SessionServer. The session keeps the state of the game, which is fully known by the server,
+ * and the belief state of the AI, which is updated after each move with putPiecePlayer or predict and filter, as in Connect4UI.
+ * The AI plays the first move. A session is used by one connection at a time (see attach).
+ * The belief state of an idle session can be spilled to a SessionStore, it is restored by the next move.
+ */
+public class GameSession {
+	private final long id;
+	private final GameState game;
+	//belief state of the AI, or null if it has been spilled to the store
+	private BeliefState beliefState;
+	private SessionStore store;
+	private final AtomicBoolean attached;
+	//time of the last request of the session (System.nanoTime)
+	private volatile long lastAccess;
+
+	/**
+	 * Construct a new game
+	 * @param id the identifier of the session
+	 * @param geometry the geometry of the game
+	 */
+	public GameSession(long id, Geometry geometry) {
+		this.id = id;
+		this.game = new GameState(geometry);
+		this.beliefState = new BeliefState(geometry);
+		this.beliefState.add(this.game.copy());
+		this.attached = new AtomicBoolean();
+		this.lastAccess = System.nanoTime();
+	}
+
+	public long id() {
+		return this.id;
+	}
+
+	public GameState game() {
+		return this.game;
+	}
+
+	public synchronized BeliefState beliefState() {
+		this.restore();
+		return this.beliefState;
+	}
+
+	/**
+	 * Move the belief state of the AI to a store, until the next move of the session
+	 * @param store the store
+	 * @return true if the belief state has been moved to the store (false if it was already in the store or if it is too large)
+	 * @throws IOException if the store cannot be written
+	 */
+	public synchronized boolean spill(SessionStore store) throws IOException {
+		if(this.beliefState == null || !store.put(this.id, this.beliefState))
+			return false;
+		this.beliefState = null;
+		this.store = store;
+		return true;
+	}
+
+	/**
+	 * Check if the belief state of the AI is in a store
+	 * @return true if the belief state has been spilled
+	 */
+	public synchronized boolean isSpilled() {
+		return this.beliefState == null;
+	}
+
+	//restore the belief state from the store if it has been spilled
+	private void restore() {
+		if(this.beliefState == null) {
+			this.beliefState = this.store.take(this.id);
+			this.store = null;
+		}
+	}
+
+	public long lastAccess() {
+		return this.lastAccess;
+	}
+
+	/**
+	 * Attach the session to a connection
+	 * @return true if the session was not attached to another connection
+	 */
+	public boolean attach() {
+		this.lastAccess = System.nanoTime();
+		return this.attached.compareAndSet(false, true);
+	}
+
+	public void detach() {
+		this.lastAccess = System.nanoTime();
+		this.attached.set(false);
+	}
+
+	public boolean isOver() {
+		return this.game.isGameOver() || this.game.isFull();
+	}
+
+	/**
+	 * Return the result of the game
+	 * @return -1 if the game is not over, 0 for a tie, 1 if yellow won and 2 if red won (the values of GameRecorder)
+	 */
+	public int result() {
+		if(this.game.isGameOver())
+			return this.game.turn()? 1: 2;
+		return this.game.isFull()? 0: -1;
+	}
+
+	/**
+	 * Play the move of the AI and update its belief state. It is a CPU-heavy computation.
+	 * @return the column played by the AI
+	 * @throws IllegalStateException if it is not the turn of the AI
+	 */
+	public synchronized int play() {
+		if(this.isOver() || this.game.turn())
+			throw new IllegalStateException("It is not the turn of the AI");
+		this.restore();
+		int column = AI.findNextMove(this.beliefState);
+		this.game.putPiece(column);
+		this.beliefState.setStates(this.beliefState.observePlayer(column, this.game));
+		this.lastAccess = System.nanoTime();
+		return column;
+	}
+
+	/**
+	 * Play a move of the opponent and update the belief state of the AI with the percept of the move
+	 * @param column the column played by the opponent
+	 * @throws IllegalStateException if it is not the turn of the opponent
+	 * @throws IllegalArgumentException if the column cannot be played
+	 */
+	public synchronized void opponentMove(int column) {
+		if(this.isOver() || !this.game.turn())
+			throw new IllegalStateException("It is not the turn of the opponent");
+		if(column < 0 || column >= this.game.geometry().columns || this.game.isFull(column))
+			throw new IllegalArgumentException("Column " + column + " cannot be played");
+		this.restore();
+		this.game.putPiece(column);
+		BeliefState observed = this.beliefState.observeOpponent(this.game);
+		//the server knows the state of the game, so it can tell when the opponent does not follow its model
+		if(observed == null || !observed.contains(this.game))
+			observed = BeliefState.filter(this.anyMove(), this.game);
+		this.beliefState.setStates(observed);
+		this.lastAccess = System.nanoTime();
+	}
+
+	/**
+	 * Compute the belief state after a move of the opponent that the model of the opponent (ProbabilisticOpponentAI.policy) does not play, for example a winning move missed by a human player
+	 * (otherwise the state of the game would not be in the belief state of the AI):
+	 * all the moves of the opponent are considered equally likely, and only the states consistent with the percept of the move are kept
+	 * @return the results of the move of the opponent, with the belief state of the percept of the current state of the game
+	 */
+	private Results anyMove() {
+		String percept = BeliefState.percept(this.game);
+		BeliefState next = new BeliefState(this.game.geometry(), BeliefState.visibility(this.game), this.beliefState.getPlayed() + 1);
+		for(GameState state: this.beliefState) {
+			MoveList moves = new MoveList();
+			for(int column = 0; column < state.geometry().columns; column++) {
+				if(!state.isFull(column))
+					moves.add(column);
+			}
+			for(int i = 0; i < moves.size(); i++) {
+				GameState copy = state.copy();
+				copy.putPiece(moves.get(i));
+				if(BeliefState.percept(copy).equals(percept)) {
+					copy.multProba(1f / moves.size());
+					next.add(copy);
+				}
+			}
+		}
+		Results results = new Results();
+		results.put(percept, next);
+		return results;
+	}
+}
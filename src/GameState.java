@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Class which keep tracks of the state of the game (content of the board). In this class, all elements are visible (as in the standard version of connected 4).
@@ -7,14 +8,24 @@ import java.util.ArrayList;
 public class GameState implements Comparable<GameState> {
 	private byte[] board;
 	private float proba;
+	private Geometry geometry;
 	
 	/**
 	 * Constructor which construct a state corresponding to an empty game (no pieces on the board)
 	 */
 	public GameState() {
-		this.board = new byte[11];
+		this(Geometry.DEFAULT);
+	}
+	
+	/**
+	 * Constructor which construct a state corresponding to an empty game of a given geometry
+	 * @param geometry the geometry of the game
+	 */
+	public GameState(Geometry geometry) {
+		this.geometry = geometry;
+		this.board = new byte[geometry.boardBytes];
 		this.proba = 1;
-		for(int i = 0; i < 11; i++) {
+		for(int i = 0; i < this.board.length; i++) {
 			this.board[i] = Byte.MIN_VALUE;
 		}
 	}
@@ -24,27 +35,94 @@ public class GameState implements Comparable<GameState> {
 	 * @return a state corresponding to a copy of the game
 	 */
 	public GameState copy() {
-		GameState copy = new GameState();
-		for(int i = 0; i < 11; i++) {
+		GameState copy = new GameState(this.geometry);
+		for(int i = 0; i < this.board.length; i++) {
 			copy.board[i] = this.board[i];
 		}
 		copy.proba = this.proba;
 		return copy;
 	}
 	
+	public Geometry geometry() {
+		return this.geometry;
+	}
+	
+	/**
+	 * Construct the state obtained by reflecting the board horizontally: the content of column c goes to column columns - 1 - c. The turn, the end of the game and the probability are unchanged.
+	 * Since the rules are symmetric, a state and its mirror have the same value (the moves being mirrored as well).
+	 * @return the mirrored state
+	 */
+	public GameState mirror() {
+		GameState mirror = this.copy();
+		for(int row = 0; row < this.geometry.rows; row++) {
+			for(int column = 0; column < this.geometry.columns; column++) {
+				mirror.set(row, this.geometry.mirror(column), this.content(row, column));
+			}
+		}
+		return mirror;
+	}
+	
 	/**
 	 * Returns the content of a given square of the game
-	 * @param row index of the row (from 0 to 5)
-	 * @param column index of the column (from 0 to 6)
+	 * @param row index of the row (from 0 to rows - 1, 5 in the standard game)
+	 * @param column index of the column (from 0 to columns - 1, 6 in the standard game)
 	 * @return 0 if the square is empty, 1 if it contains a yellow piece and 2 if it contains a red piece.
 	 */
 	public int content(int row, int column) {
-		int pos = row * 14 + column * 2;
+		int pos = row * this.geometry.rowBits + column * 2;
 		int index = pos / 8;
 		pos = pos % 8;
 		return (((this.board[index] + 128) >> pos) % 4);
 	}
 	
+	/**
+	 * Returns the squares of the board which contain the pieces of a player, as a mask: bit row * columns + column is set if the square contains a piece of the player.
+	 * The board must have at most 64 squares.
+	 * @param player 1 for the yellow pieces and 2 for the red pieces
+	 * @return the mask of the pieces of the player
+	 */
+	public long pieceMask(int player) {
+		long mask = 0;
+		int squares = this.geometry.rows * this.geometry.columns;
+		for(int square = 0; square < squares; square++) {
+			int pos = square * 2;
+			if((((this.board[pos / 8] + 128) >> (pos % 8)) & 3) == player)
+				mask |= 1L << square;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Write the encoding of the state (squares, end of the game and turn) in words of 64 bits: bit i of the encoding is bit i % 64 of words[offset + i / 64].
+	 * A square takes 2 bits (its content), starting with square 0 (row 0, column 0), then the other squares in the order of the rows.
+	 * @param words the array in which the state is written
+	 * @param offset the index of the first word of the state
+	 */
+	public void pack(long[] words, int offset) {
+		for(int i = 0; i < this.board.length; i++) {
+			if(i % 8 == 0)
+				words[offset + i / 8] = 0;
+			words[offset + i / 8] |= ((long) ((this.board[i] + 128) & 0xFF)) << (8 * (i % 8));
+		}
+	}
+	
+	/**
+	 * Construct a state from its encoding in words of 64 bits (see pack)
+	 * @param geometry the geometry of the game
+	 * @param words the array in which the state is written
+	 * @param offset the index of the first word of the state
+	 * @param proba the probability of the state
+	 * @return the state
+	 */
+	public static GameState unpack(Geometry geometry, long[] words, int offset, float proba) {
+		GameState state = new GameState(geometry);
+		for(int i = 0; i < state.board.length; i++) {
+			state.board[i] = (byte) (((words[offset + i / 8] >>> (8 * (i % 8))) & 0xFF) - 128);
+		}
+		state.proba = proba;
+		return state;
+	}
+	
 	/**
 	 * return the probability of the state. This probability is meaningful only if the state is part of a belief state.
 	 * @return the probability that a given state occurs in a given belief state
@@ -67,12 +145,12 @@ public class GameState implements Comparable<GameState> {
 	}
 	
 	/**
-	 * check if a given column is full (contains 6 pieces of any kind)
+	 * check if a given column is full (contains 6 pieces of any kind in the standard game)
 	 * @param column the index of the column
 	 * @return true if the column is full, and false otherwise
 	 */
 	public boolean isFull(int column) {
-		return this.content(5, column) != 0;
+		return this.content(this.geometry.rows - 1, column) != 0;
 	}
 	
 	/**
@@ -80,7 +158,7 @@ public class GameState implements Comparable<GameState> {
 	 * @return true if all columns are full
 	 */
 	public boolean isFull() {
-		for(int column = 0; column < 7; column++) {
+		for(int column = 0; column < this.geometry.columns; column++) {
 			if(!this.isFull(column))
 				return false;
 		}
@@ -88,7 +166,7 @@ public class GameState implements Comparable<GameState> {
 	}
 	
 	public void set(int row, int column, int val) {
-		int pos = row * 14 + column * 2;
+		int pos = row * this.geometry.rowBits + column * 2;
 		int index = pos / 8;
 		pos = pos % 8;
 		int delta = ((val % 4) - this.content(row, column)) << pos;
@@ -100,20 +178,22 @@ public class GameState implements Comparable<GameState> {
 	 * @return
 	 */
 	public boolean isGameOver() {
-		return ((this.board[10] + 128) >> 4) % 2 > 0? true: false;
+		int bit = this.geometry.gameOverBit;
+		return ((this.board[bit / 8] + 128) >> (bit % 8)) % 2 > 0? true: false;
 	}
 	
 	public boolean putPiece(int column) {
 		if(this.isGameOver())
 			return false;
-		if(this.content(5, column) != 0)
+		if(this.content(this.geometry.rows - 1, column) != 0)
 			return false;
 		int row = 0;
 		while(this.content(row, column) != 0)
 			row++;
 		this.set(row, column, this.turn()? 1: 2);
 		if(this.checkWin(row, column)) {
-			this.board[10] += 16;
+			int bit = this.geometry.gameOverBit;
+			this.board[bit / 8] += 1 << (bit % 8);
 		}
 		else
 			this.changeTurn();
@@ -122,26 +202,32 @@ public class GameState implements Comparable<GameState> {
 	
 	
 	public boolean turn() {
-		return ((this.board[10] + 128) >> 5) % 2 > 0? true: false;
+		int bit = this.geometry.turnBit;
+		return ((this.board[bit / 8] + 128) >> (bit % 8)) % 2 > 0? true: false;
 	}
 	
 	public void changeTurn() {
+		int bit = this.geometry.turnBit;
 		if(this.turn()) {
-			this.board[10] = (byte) (this.board[10] - 32);
+			this.board[bit / 8] = (byte) (this.board[bit / 8] - (1 << (bit % 8)));
 		}
 		else {
-			this.board[10] = (byte) (this.board[10] + 32);
+			this.board[bit / 8] = (byte) (this.board[bit / 8] + (1 << (bit % 8)));
 		}
 	}
 	
 	public boolean checkWin(int row, int column) {
 		int turn = this.turn()? 1: 2;
+		//number of pieces that must be aligned with the piece at (row, column), and last row and column of the board
+		int line = this.geometry.k - 1;
+		int lastRow = this.geometry.rows - 1;
+		int lastColumn = this.geometry.columns - 1;
 		
 		int south = 0;
 		while(row - south > 0 && this.content(row - south - 1, column) == turn) {
 			south++;
 		}
-		if(south > 2) {
+		if(south >= line) {
 			return true;
 		}
 		
@@ -150,10 +236,10 @@ public class GameState implements Comparable<GameState> {
 			west++;
 		}
 		int est = 0;
-		while(column + est < 6 && this.content(row, column + est + 1) == turn) {
+		while(column + est < lastColumn && this.content(row, column + est + 1) == turn) {
 			est++;
 		}
-		if(est + west > 2) {
+		if(est + west >= line) {
 			return true;
 		}
 		int southWest = 0;
@@ -161,21 +247,21 @@ public class GameState implements Comparable<GameState> {
 			southWest++;
 		}
 		int northEst = 0;
-		while(row + northEst < 5 && column + northEst < 6 && this.content(row + northEst + 1, column + northEst + 1) == turn) {
+		while(row + northEst < lastRow && column + northEst < lastColumn && this.content(row + northEst + 1, column + northEst + 1) == turn) {
 			northEst++;
 		}
-		if(southWest + northEst > 2) {
+		if(southWest + northEst >= line) {
 			return true;
 		}
 		int southEst = 0;
-		while(southEst < row && column + southEst < 6 && this.content(row - southEst - 1, column + southEst + 1) == turn) {
+		while(southEst < row && column + southEst < lastColumn && this.content(row - southEst - 1, column + southEst + 1) == turn) {
 			southEst++;
 		}
 		int northWest = 0;
-		while(row + northWest < 5 && northWest < column  && this.content(row + northWest + 1, column - northWest - 1) == turn) {
+		while(row + northWest < lastRow && northWest < column  && this.content(row + northWest + 1, column - northWest - 1) == turn) {
 			northWest++;
 		}
-		if(northWest + southEst > 2) {
+		if(northWest + southEst >= line) {
 			return true;
 		}
 		return false;
@@ -183,8 +269,8 @@ public class GameState implements Comparable<GameState> {
 	
 	public String toString() {
 		String s = "";
-		for(int i = 5; i >= 0; i--) {
-			for(int j = 0; j < 7; j++) {
+		for(int i = this.geometry.rows - 1; i >= 0; i--) {
+			for(int j = 0; j < this.geometry.columns; j++) {
 				switch(this.content(i, j)) {
 				case 1: s += "o"; break;
 				case 2: s += "*"; break;
@@ -198,8 +284,21 @@ public class GameState implements Comparable<GameState> {
 		return s;
 	}
 	
+	/**
+	 * Two states are equal if their boards are the same (as for compareTo, the probability is not taken into account)
+	 */
+	public boolean equals(Object o) {
+		if(!(o instanceof GameState))
+			return false;
+		return Arrays.equals(this.board, ((GameState) o).board);
+	}
+	
+	public int hashCode() {
+		return Arrays.hashCode(this.board);
+	}
+	
 	public int compareTo(GameState toCompare) {
-		for(int i = 0; i < 11; i++) {
+		for(int i = 0; i < this.board.length; i++) {
 			if(this.board[i] > toCompare.board[i]) {
 				return 1;
 			}
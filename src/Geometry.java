@@ -0,0 +1,131 @@
+/**
+ * Geometry of the game: number of rows and columns of the board, and number k of pieces to align to win. All the tables which depend on the geometry
+ * (sizes of the encodings, windows of k squares, heuristic tables and weights) are computed once when the geometry is constructed.
+ * The standard game (6 rows, 7 columns, connect 4) is Geometry.DEFAULT.
+ */
+public class Geometry {
+	//weights of the rows of the standard game (see AI.rweights), they are interpolated for the other numbers of rows
+	private final static double DEFAULT_RWEIGHTS[] = new double[] {1.2, 1., 0.7, 0.5, 0.3, 0.1};
+
+	public final static Geometry DEFAULT = new Geometry(6, 7, 4);
+
+	public final int rows;
+	public final int columns;
+	public final int k;
+
+	//number of bits used by a row in the encoding of a game state (2 bits per square)
+	final int rowBits;
+	//number of bytes of the encoding of a game state, and position of the bits which tell if the game is over and whose turn it is
+	final int boardBytes;
+	final int gameOverBit;
+	final int turnBit;
+	//number of bytes of the encoding of the visible squares of a belief state (1 bit per square)
+	final int visibleBytes;
+
+	//for each square, the number of windows of k squares that contain it
+	final int heuristic[][];
+	//for each square, the windows of k squares that contain it, each window being given by the indexes (row * columns + column) of its other squares
+	final int windows[][][][];
+	final double cweights[];
+	final double rweights[];
+
+	/**
+	 * Return the geometry of a game. The standard game is always represented by Geometry.DEFAULT, so that it can be recognized with ==.
+	 * @param rows number of rows of the board
+	 * @param columns number of columns of the board (at most MoveList.CAPACITY)
+	 * @param k number of pieces to align to win
+	 * @return the geometry
+	 */
+	public static Geometry of(int rows, int columns, int k) {
+		if(DEFAULT != null && rows == DEFAULT.rows && columns == DEFAULT.columns && k == DEFAULT.k)
+			return DEFAULT;
+		return new Geometry(rows, columns, k);
+	}
+
+	private Geometry(int rows, int columns, int k) {
+		if(rows < 1 || columns < 1 || columns > MoveList.CAPACITY || k < 2 || (k > rows && k > columns)) {
+			throw new IllegalArgumentException("Invalid geometry: " + rows + "x" + columns + " connect " + k);
+		}
+		this.rows = rows;
+		this.columns = columns;
+		this.k = k;
+		this.rowBits = columns * 2;
+		this.gameOverBit = rows * columns * 2;
+		this.turnBit = this.gameOverBit + 1;
+		this.boardBytes = (this.turnBit + 8) / 8;
+		this.visibleBytes = (rows * columns + 7) / 8;
+
+		this.heuristic = new int[rows][columns];
+		this.windows = new int[rows][columns][][];
+		int directions[][] = new int[][] {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+		for(int row = 0; row < rows; row++) {
+			for(int column = 0; column < columns; column++) {
+				int count = 0;
+				int cellWindows[][] = new int[4 * k][];
+				for(int[] direction: directions) {
+					//the window starts start squares before the square in the direction
+					for(int start = 0; start < k; start++) {
+						int startRow = row - start * direction[0];
+						int startColumn = column - start * direction[1];
+						int endRow = startRow + (k - 1) * direction[0];
+						int endColumn = startColumn + (k - 1) * direction[1];
+						if(startRow < 0 || endRow >= rows || Math.min(startColumn, endColumn) < 0 || Math.max(startColumn, endColumn) >= columns)
+							continue;
+						int window[] = new int[k - 1];
+						int index = 0;
+						for(int i = 0; i < k; i++) {
+							int r = startRow + i * direction[0];
+							int c = startColumn + i * direction[1];
+							if(r != row || c != column)
+								window[index++] = r * columns + c;
+						}
+						cellWindows[count++] = window;
+					}
+				}
+				this.heuristic[row][column] = count;
+				this.windows[row][column] = new int[count][];
+				for(int i = 0; i < count; i++) {
+					this.windows[row][column][i] = cellWindows[i];
+				}
+			}
+		}
+
+		//the pieces on the sides weigh more than the ones in the centre (1.1, 1, 0.9, 0.8, 0.9, 1, 1.1 for 7 columns)
+		this.cweights = new double[columns];
+		for(int column = 0; column < columns; column++) {
+			this.cweights[column] = 0.8 + 0.1 * Math.abs(column - (columns - 1) / 2.);
+		}
+		//the pieces at the bottom weigh more than the ones at the top
+		this.rweights = new double[rows];
+		for(int row = 0; row < rows; row++) {
+			double position = rows == 1? 0: row * (DEFAULT_RWEIGHTS.length - 1.) / (rows - 1);
+			int low = (int) position;
+			int high = Math.min(low + 1, DEFAULT_RWEIGHTS.length - 1);
+			this.rweights[row] = DEFAULT_RWEIGHTS[low] + (position - low) * (DEFAULT_RWEIGHTS[high] - DEFAULT_RWEIGHTS[low]);
+		}
+	}
+
+	/**
+	 * Return the column obtained by reflecting a column horizontally
+	 * @param column the index of the column
+	 * @return the index of the mirrored column
+	 */
+	public int mirror(int column) {
+		return this.columns - 1 - column;
+	}
+
+	public boolean equals(Object o) {
+		if(!(o instanceof Geometry))
+			return false;
+		Geometry geometry = (Geometry) o;
+		return this.rows == geometry.rows && this.columns == geometry.columns && this.k == geometry.k;
+	}
+
+	public int hashCode() {
+		return (this.rows * 31 + this.columns) * 31 + this.k;
+	}
+
+	public String toString() {
+		return this.rows + "x" + this.columns + " connect " + this.k;
+	}
+}
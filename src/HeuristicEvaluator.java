@@ -0,0 +1,12 @@
+/**
+ * Evaluator computing the full heuristic of the AI (see AI.heuristic(GameState)): for each piece, the number of lines of 4 that it is on and that are not blocked by the opponent.
+ */
+public class HeuristicEvaluator implements Evaluator {
+	public double evaluate(GameState game) {
+		return AI.heuristic(game);
+	}
+	
+	public String toString() {
+		return "heuristic";
+	}
+}
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values with a bounded relative error, in the manner of an HDR histogram: the values are grouped by power of two,
+ * and each power of two is split into 2^SUB_BUCKET_BITS buckets of the same width (so the relative error is below 1 / 2^SUB_BUCKET_BITS).
+ * Recording a value only increments a counter, so it can be done in the hot paths of the search.
+ */
+public class Histogram {
+	private final static int SUB_BUCKET_BITS = 3;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private long[] counts;
+	private long count;
+	private long sum;
+	private long min;
+	private long max;
+	
+	/**
+	 * construct an empty histogram
+	 */
+	public Histogram() {
+		this.counts = new long[BUCKETS];
+		this.reset();
+	}
+	
+	/**
+	 * Record a value (negative values are recorded as 0)
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+		this.counts[Histogram.bucket(value)]++;
+		this.count++;
+		this.sum += value;
+		if(value < this.min)
+			this.min = value;
+		if(value > this.max)
+			this.max = value;
+	}
+	
+	/**
+	 * Add all the values recorded by another histogram to this one
+	 * @param histogram the histogram to add
+	 */
+	public void add(Histogram histogram) {
+		for(int i = 0; i < BUCKETS; i++) {
+			this.counts[i] += histogram.counts[i];
+		}
+		this.count += histogram.count;
+		this.sum += histogram.sum;
+		this.min = Math.min(this.min, histogram.min);
+		this.max = Math.max(this.max, histogram.max);
+	}
+	
+	public void reset() {
+		Arrays.fill(this.counts, 0);
+		this.count = 0;
+		this.sum = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = 0;
+	}
+	
+	public long count() {
+		return this.count;
+	}
+	
+	public long min() {
+		return this.count == 0? 0: this.min;
+	}
+	
+	public long max() {
+		return this.max;
+	}
+	
+	public double mean() {
+		return this.count == 0? 0: ((double) this.sum) / this.count;
+	}
+	
+	/**
+	 * Return an approximation of a percentile of the recorded values
+	 * @param percentile the percentile (from 0 to 100)
+	 * @return the highest value of the bucket containing the percentile (bounded by the maximum recorded value)
+	 */
+	public long percentile(double percentile) {
+		if(this.count == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100. * this.count);
+		long cumul = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			cumul += this.counts[i];
+			if(cumul >= rank && cumul > 0) {
+				return Math.min(Histogram.highestValue(i), this.max);
+			}
+		}
+		return this.max;
+	}
+	
+	private static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+	
+	private static long highestValue(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket & (SUB_BUCKETS - 1);
+		long low = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		return low + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	public String toString() {
+		return "count = " + this.count + " min = " + this.min() + " mean = " + String.format("%.1f", this.mean()) + " p50 = " + this.percentile(50) + " p99 = " + this.percentile(99) + " max = " + this.max;
+	}
+}
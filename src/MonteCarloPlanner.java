@@ -0,0 +1,184 @@
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Anytime Monte Carlo planner over belief states, in the manner of POMCP. Each simulation samples a concrete state of the game from the belief state (with the probabilities of the states),
+ * plays it until the end of the game and updates a search tree whose nodes correspond to histories of actions and percepts (the percepts being the same strings as the keys of Results).
+ * The opponent is played by ProbabilisticOpponentAI, and the moves of the AI outside of the tree are played at random.
+ * The cost of a simulation does not depend on the size of the belief state, only the sampling of the initial state does (once per decision).
+ */
+public class MonteCarloPlanner {
+	//exploration constant of the UCB rule (the rewards are in [-1, 1])
+	private final static double EXPLORATION = 1.4;
+
+	private int iterations;
+	private long timeBudget;
+	private ProbabilisticOpponentAI opponent;
+	private Random random;
+
+	/**
+	 * Node of the search tree: a history of actions and percepts from the current belief state. For each action it keeps the number of visits and the mean reward,
+	 * and the nodes reached by this action for each percept observed after the move of the opponent.
+	 */
+	private static class Node {
+		int visits;
+		int[] actionVisits;
+		double[] actionValues;
+		HashMap<String, Node>[] children;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Node(int columns) {
+			this.actionVisits = new int[columns];
+			this.actionValues = new double[columns];
+			this.children = new HashMap[columns];
+		}
+	}
+
+	/**
+	 * Construct a planner with a given budget. The search stops as soon as one of the budgets is exhausted.
+	 * @param iterations maximum number of simulations per decision
+	 * @param timeBudget maximum time per decision in milliseconds
+	 */
+	public MonteCarloPlanner(int iterations, long timeBudget) {
+		this.iterations = iterations;
+		this.timeBudget = timeBudget;
+		this.opponent = new ProbabilisticOpponentAI();
+		this.random = new Random();
+	}
+
+	/**
+	 * Returns the best action to take in the current situation i.e., the action the most visited by the simulations
+	 * @param beliefState the current belief state (it is the turn of the AI)
+	 * @return an integer which represents the column to play
+	 */
+	public int findNextMove(BeliefState beliefState) {
+		Geometry geometry = beliefState.geometry();
+		//cumulative probabilities of the states, used to sample them
+		GameState[] states = new GameState[beliefState.size()];
+		double[] cumul = new double[beliefState.size()];
+		double sum = 0;
+		int n = 0;
+		for(GameState state: beliefState) {
+			sum += state.proba();
+			states[n] = state;
+			cumul[n++] = sum;
+		}
+
+		Node root = new Node(geometry.columns);
+		long deadline = System.currentTimeMillis() + this.timeBudget;
+		for(int i = 0; i < this.iterations && System.currentTimeMillis() < deadline; i++) {
+			double r = this.random.nextDouble() * sum;
+			int index = 0;
+			while(index < n - 1 && cumul[index] <= r) {
+				index++;
+			}
+			this.simulate(root, states[index].copy());
+		}
+
+		MoveList moves = beliefState.getMoves();
+		int best = moves.get(0);
+		for(int i = 1; i < moves.size(); i++) {
+			if(root.actionVisits[moves.get(i)] > root.actionVisits[best]) {
+				best = moves.get(i);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Performs one simulation from a node of the tree
+	 * @param node the node of the tree corresponding to the state
+	 * @param state the state of the game (it is modified by the simulation)
+	 * @return the reward of the simulation for the AI
+	 */
+	private double simulate(Node node, GameState state) {
+		int action = this.select(node, state);
+		state.putPiece(action);
+		double reward;
+		if(state.isGameOver() || state.isFull()) {
+			reward = MonteCarloPlanner.reward(state);
+		}
+		else {
+			state.putPiece(this.opponent.decision(state));
+			if(state.isGameOver() || state.isFull()) {
+				reward = MonteCarloPlanner.reward(state);
+			}
+			else {
+				if(node.children[action] == null) {
+					node.children[action] = new HashMap<String, Node>();
+				}
+				String percept = BeliefState.percept(state);
+				Node child = node.children[action].get(percept);
+				if(child == null) {
+					//the history is new: the node is added to the tree and the end of the game is played at random
+					node.children[action].put(percept, new Node(state.geometry().columns));
+					reward = this.rollout(state);
+				}
+				else {
+					reward = this.simulate(child, state);
+				}
+			}
+		}
+		node.visits++;
+		node.actionVisits[action]++;
+		node.actionValues[action] += (reward - node.actionValues[action]) / node.actionVisits[action];
+		return reward;
+	}
+
+	/**
+	 * Select the action to try in a node: an action which has never been tried if there is one, and the action maximizing the UCB value otherwise
+	 * @param node the node of the tree
+	 * @param state the state of the game
+	 * @return the column to play
+	 */
+	private int select(Node node, GameState state) {
+		int best = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		double logVisits = Math.log(node.visits + 1);
+		for(int column = 0; column < node.actionVisits.length; column++) {
+			if(state.isFull(column))
+				continue;
+			if(node.actionVisits[column] == 0)
+				return column;
+			double value = node.actionValues[column] + EXPLORATION * Math.sqrt(logVisits / node.actionVisits[column]);
+			if(value > bestValue) {
+				bestValue = value;
+				best = column;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Play the end of a game: the AI plays at random and the opponent with ProbabilisticOpponentAI
+	 * @param state the state of the game (it is modified by the rollout)
+	 * @return the reward of the game for the AI
+	 */
+	private double rollout(GameState state) {
+		int columns = state.geometry().columns;
+		while(!state.isGameOver() && !state.isFull()) {
+			if(state.turn()) {
+				state.putPiece(this.opponent.decision(state));
+			}
+			else {
+				int column = this.random.nextInt(columns);
+				while(state.isFull(column)) {
+					column = (column + 1) % columns;
+				}
+				state.putPiece(column);
+			}
+		}
+		return MonteCarloPlanner.reward(state);
+	}
+
+	/**
+	 * Reward of a finished game for the AI
+	 * @param state the final state of the game
+	 * @return 1 if the AI (red) won, -1 if the opponent won, and 0 for a tie
+	 */
+	private static double reward(GameState state) {
+		if(!state.isGameOver())
+			return 0;
+		return state.turn()? -1: 1;
+	}
+}
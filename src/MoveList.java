@@ -0,0 +1,129 @@
+/**
+ * Fixed-capacity list of moves (indexes of columns) with a score attached to each move. The columns are packed 4 bits each in a long and the scores are kept in a small array,
+ * so that moves can be listed and ordered without boxing any column index.
+ */
+public class MoveList {
+	//maximum number of moves that the list can hold (one per column)
+	public final static int CAPACITY = 16;
+
+	private long columns;
+	private double[] scores;
+	private int size;
+
+	/**
+	 * construct an empty list
+	 */
+	public MoveList() {
+		this.columns = 0;
+		this.scores = new double[CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Add a move at the end of the list, with a score of 0
+	 * @param column the index of the column
+	 */
+	public void add(int column) {
+		this.add(column, 0.);
+	}
+
+	/**
+	 * Add a move at the end of the list
+	 * @param column the index of the column
+	 * @param score the score of the move
+	 */
+	public void add(int column, double score) {
+		this.set(this.size, column);
+		this.scores[this.size] = score;
+		this.size++;
+	}
+
+	/**
+	 * Return the move at a given position of the list
+	 * @param i the position in the list
+	 * @return the index of the column
+	 */
+	public int get(int i) {
+		return (int) (this.columns >>> (i * 4)) & 15;
+	}
+
+	public double score(int i) {
+		return this.scores[i];
+	}
+
+	public void setScore(int i, double score) {
+		this.scores[i] = score;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public void clear() {
+		this.columns = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Check if a given column belongs to the list
+	 * @param column the index of the column
+	 * @return true if the column is one of the moves of the list
+	 */
+	public boolean contains(int column) {
+		for(int i = 0; i < this.size; i++) {
+			if(this.get(i) == column)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts (Insertion Sort) the moves in decreasing order of their scores. Moves with the same score keep their order.
+	 */
+	public void sortByScore() {
+		for(int i = 1; i < this.size; i++) {
+			int column = this.get(i);
+			double score = this.scores[i];
+			int j = i - 1;
+			while(j >= 0 && this.scores[j] < score) {
+				this.set(j + 1, this.get(j));
+				this.scores[j + 1] = this.scores[j];
+				j--;
+			}
+			this.set(j + 1, column);
+			this.scores[j + 1] = score;
+		}
+	}
+
+	/**
+	 * Move the move at a given position to the front of the list, the moves before it are shifted by one position
+	 * @param i the position of the move
+	 */
+	public void moveToFront(int i) {
+		int column = this.get(i);
+		double score = this.scores[i];
+		for(int j = i; j > 0; j--) {
+			this.set(j, this.get(j - 1));
+			this.scores[j] = this.scores[j - 1];
+		}
+		this.set(0, column);
+		this.scores[0] = score;
+	}
+
+	private void set(int i, int column) {
+		int shift = i * 4;
+		this.columns = (this.columns & ~(15L << shift)) | ((long) column << shift);
+	}
+
+	public String toString() {
+		String s = "";
+		for(int i = 0; i < this.size; i++) {
+			s += this.get(i) + ":" + this.scores[i] + " ";
+		}
+		return s;
+	}
+}
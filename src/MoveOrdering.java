@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+/**
+ * Tables used to order the moves of the search. They are shared by all the nodes of a search:
+ * - the killer moves are, for each depth, the last two moves that gave the best plan at this depth;
+ * - the history table counts, for each turn and each column, how often the column gave the best plan (deeper plans count more).
+ * A move is first ordered by its score, ties are broken using the history table and the killer moves of the depth are tried first.
+ */
+public class MoveOrdering {
+	private final static int MAX_DEPTH = 64;
+	private final static int MAX_TURN = 128;
+	private final static int NO_MOVE = -1;
+	
+	private int[][] killers;
+	private long[][] history;
+	//scores of the moves indexed by column, one array per depth since the nodes of different depths are ordered while the others are still searched
+	private double[][] scores;
+	
+	/**
+	 * construct empty tables
+	 */
+	public MoveOrdering() {
+		this.killers = new int[MAX_DEPTH][2];
+		this.history = new long[MAX_TURN][MoveList.CAPACITY];
+		this.scores = new double[MAX_DEPTH][MoveList.CAPACITY];
+		for(int depth = 0; depth < MAX_DEPTH; depth++) {
+			Arrays.fill(this.killers[depth], NO_MOVE);
+		}
+	}
+	
+	/**
+	 * Prepare the tables for a new search: the killer moves are forgotten and the history is aged, so that the previous searches still count but less than the current one
+	 */
+	public void newSearch() {
+		for(int depth = 0; depth < MAX_DEPTH; depth++) {
+			Arrays.fill(this.killers[depth], NO_MOVE);
+		}
+		for(int turn = 0; turn < MAX_TURN; turn++) {
+			for(int column = 0; column < MoveList.CAPACITY; column++) {
+				this.history[turn][column] >>= 1;
+			}
+		}
+	}
+	
+	/**
+	 * Order the moves of a node
+	 * @param moves the moves of the node, each one scored with the value of the state it leads to
+	 * @param depth depth of the node in the search
+	 * @param turn number of pieces played in the belief state of the node
+	 */
+	public void order(MoveList moves, int depth, int turn) {
+		int n = moves.size();
+		double[] scores = this.scores[depth % MAX_DEPTH];
+		for(int i = 0; i < n; i++) {
+			scores[moves.get(i)] = moves.score(i);
+			moves.setScore(i, this.history[turn % MAX_TURN][moves.get(i)]);
+		}
+		//the sort is stable, so sorting by history and then by score breaks the ties of the scores using the history
+		moves.sortByScore();
+		for(int i = 0; i < n; i++) {
+			moves.setScore(i, scores[moves.get(i)]);
+		}
+		moves.sortByScore();
+		//the killer moves are tried first, the most recent one in first position
+		for(int k = 1; k >= 0; k--) {
+			int killer = this.killers[depth % MAX_DEPTH][k];
+			for(int i = 0; i < n; i++) {
+				if(moves.get(i) == killer) {
+					moves.moveToFront(i);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Record that a move gave the best plan of a node
+	 * @param column the column played
+	 * @param depth depth of the node in the search
+	 * @param remaining number of levels searched below the node
+	 * @param turn number of pieces played in the belief state of the node
+	 */
+	public void update(int column, int depth, int remaining, int turn) {
+		int[] killer = this.killers[depth % MAX_DEPTH];
+		if(killer[0] != column) {
+			killer[1] = killer[0];
+			killer[0] = column;
+		}
+		this.history[turn % MAX_TURN][column] += (remaining + 1) * (remaining + 1);
+	}
+}
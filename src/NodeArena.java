@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Arena in which the search stores the nodes of its contingency plans. Each node is a packed record spread over a few primitive arrays and is addressed by an int handle,
+ * so that a search of any depth allocates no plan object. All the nodes are released at once with clear() when a new search starts, and the arrays are reused from one search to the next.
+ */
+public class NodeArena {
+	//handle returned when there is no node (it plays the role of a null plan)
+	public final static int NONE = -1;
+	//action stored in the nodes that do not correspond to any move
+	public final static int NO_ACTION = -1;
+
+	private final static int INITIAL_CAPACITY = 1024;
+
+	//column played by the node (or NO_ACTION)
+	private byte[] action;
+	//true if the node is a leaf i.e., the search stopped at this node
+	private boolean[] isLeaf;
+	//heuristic value of the plan, as computed by the or-search
+	private double[] heuristicValue;
+	//sum of the values of the subplans (the value used by the parent node when this node is not a leaf)
+	private double[] subplanValue;
+	//handle of the first subplan and of the next sibling (linked list of the subplans of a node)
+	private int[] firstChild;
+	private int[] nextSibling;
+
+	private int size;
+
+	/**
+	 * construct an empty arena
+	 */
+	public NodeArena() {
+		this.action = new byte[INITIAL_CAPACITY];
+		this.isLeaf = new boolean[INITIAL_CAPACITY];
+		this.heuristicValue = new double[INITIAL_CAPACITY];
+		this.subplanValue = new double[INITIAL_CAPACITY];
+		this.firstChild = new int[INITIAL_CAPACITY];
+		this.nextSibling = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Allocate a new node without any subplan
+	 * @param action the column played by the node (or NO_ACTION)
+	 * @param isLeaf true if the node is a leaf
+	 * @param heuristicValue the heuristic value of the node
+	 * @return the handle of the node
+	 */
+	public int newNode(int action, boolean isLeaf, double heuristicValue) {
+		if(this.size == this.action.length) {
+			this.grow();
+		}
+		int node = this.size++;
+		this.action[node] = (byte) action;
+		this.isLeaf[node] = isLeaf;
+		this.heuristicValue[node] = heuristicValue;
+		this.subplanValue[node] = 0.;
+		this.firstChild[node] = NONE;
+		this.nextSibling[node] = NONE;
+		return node;
+	}
+
+	/**
+	 * Attach a subplan to a node
+	 * @param parent handle of the node
+	 * @param child handle of the subplan
+	 * @param value value of the subplan, which is added to the subplan value of the parent
+	 */
+	public void addChild(int parent, int child, double value) {
+		this.nextSibling[child] = this.firstChild[parent];
+		this.firstChild[parent] = child;
+		this.subplanValue[parent] += value;
+	}
+
+	/**
+	 * Return the number of nodes currently allocated. This value can be used as a mark for release().
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Release all the nodes allocated after a given mark (the nodes of a plan which has been discarded)
+	 * @param mark value returned by size() before the allocation of the nodes to release
+	 */
+	public void release(int mark) {
+		this.size = mark;
+	}
+
+	/**
+	 * Release all the nodes of the arena
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	public int action(int node) {
+		return this.action[node];
+	}
+
+	public boolean isLeaf(int node) {
+		return this.isLeaf[node];
+	}
+
+	public double heuristicValue(int node) {
+		return this.heuristicValue[node];
+	}
+
+	public void setHeuristicValue(int node, double heuristicValue) {
+		this.heuristicValue[node] = heuristicValue;
+	}
+
+	public double subplanValue(int node) {
+		return this.subplanValue[node];
+	}
+
+	public void setSubplanValue(int node, double subplanValue) {
+		this.subplanValue[node] = subplanValue;
+	}
+
+	public boolean hasChildren(int node) {
+		return this.firstChild[node] != NONE;
+	}
+
+	public int firstChild(int node) {
+		return this.firstChild[node];
+	}
+
+	public int nextSibling(int node) {
+		return this.nextSibling[node];
+	}
+
+	private void grow() {
+		int capacity = this.action.length * 2;
+		this.action = Arrays.copyOf(this.action, capacity);
+		this.isLeaf = Arrays.copyOf(this.isLeaf, capacity);
+		this.heuristicValue = Arrays.copyOf(this.heuristicValue, capacity);
+		this.subplanValue = Arrays.copyOf(this.subplanValue, capacity);
+		this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+		this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+	}
+}
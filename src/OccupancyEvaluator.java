@@ -0,0 +1,73 @@
+/**
+ * Approximate evaluator of the belief states, computed from the probability-weighted occupancy of the squares (see BeliefState.occupancy) instead of the states themselves.
+ * The heuristic of a state sums, for each piece, the lines of 4 that it is on and that are not blocked by the opponent. Assuming that the squares are occupied independently,
+ * the expected number of lines of a square blocked by the opponent is the sum over its lines of 1 - (probability that none of the other squares of the line holds an opponent piece).
+ * The cost of an evaluation is proportional to the number of squares times the number of squares of their lines (each line is scanned once for each of its squares),
+ * and not to the number of states of the belief state. The products over the lines are not maintained by the belief state, since they depend on the sum of the probabilities,
+ * which changes with each state added.
+ * A single game state is evaluated exactly (with AI.heuristic).
+ */
+public class OccupancyEvaluator implements Evaluator {
+	public double evaluate(GameState game) {
+		return AI.heuristic(game);
+	}
+
+	/**
+	 * Allocate the occupancy of the root, so that it is maintained incrementally in all the belief states computed by the search
+	 */
+	public void prepare(BeliefState root) {
+		root.occupancy();
+	}
+
+	public double evaluate(BeliefState state) {
+		Geometry geometry = state.geometry();
+		double[] occupancy = state.occupancy();
+		double probaSum = occupancy[occupancy.length - 1];
+		if(probaSum <= 0)
+			return 0.;
+		double scale = 1. / probaSum;
+		double value = 0.;
+		int square = 0;
+		for(int row = 0; row < geometry.rows; row++) {
+			for(int column = 0; column < geometry.columns; column++) {
+				double yellow = occupancy[2 * square];
+				double red = occupancy[2 * square + 1];
+				if(yellow > 0 || red > 0) {
+					double weight = geometry.cweights[column] * geometry.rweights[row];
+					int[][] windows = geometry.windows[row][column];
+					if(red > 0)
+						value += red * weight * (geometry.heuristic[row][column] - OccupancyEvaluator.blocked(windows, occupancy, 0, scale));
+					if(yellow > 0)
+						value -= yellow * weight * (geometry.heuristic[row][column] - OccupancyEvaluator.blocked(windows, occupancy, 1, scale));
+				}
+				square++;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Computes the expected number of lines of a square which hold a piece of the opponent
+	 * @param windows the lines of the square (indexes of their other squares)
+	 * @param occupancy the probability-weighted occupancy of the squares (see BeliefState.occupancy)
+	 * @param opponent 0 if the opponent is yellow, 1 if it is red
+	 * @param scale the inverse of the sum of the probabilities of the states
+	 * @return the expected number of lines blocked by the opponent
+	 */
+	private static double blocked(int[][] windows, double[] occupancy, int opponent, double scale) {
+		double blocked = 0.;
+		for(int[] window: windows) {
+			//probability that none of the other squares of the line holds a piece of the opponent
+			double none = 1.;
+			for(int other: window) {
+				none *= Math.max(0., 1. - occupancy[2 * other + opponent] * scale);
+			}
+			blocked += 1. - none;
+		}
+		return blocked;
+	}
+
+	public String toString() {
+		return "occupancy";
+	}
+}
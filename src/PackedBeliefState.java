@@ -0,0 +1,167 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Structure-of-arrays layout of the states of a belief state: the encodings of the states are packed one after the other in a long[] (see GameState.pack),
+ * their probabilities in a float[], and for the boards of at most 64 squares the masks of the red and yellow pieces in two long[] (see GameState.pieceMask).
+ * The loops over the states (end of the game, sum of the probabilities, heuristic) read consecutive words instead of following the nodes of the TreeSet of BeliefState.
+ * The states can still be read as GameState objects through the Iterable interface, which creates them on demand.
+ */
+public class PackedBeliefState implements Iterable<GameState> {
+	private final static long EVEN_BITS = 0x5555555555555555L;
+
+	private Geometry geometry;
+	private int wordsPerState;
+	private int size;
+	private long[] boards;
+	private float[] proba;
+	private long[] red;
+	private long[] yellow;
+
+	/**
+	 * Pack the states of a belief state
+	 * @param beliefState the belief state
+	 */
+	public PackedBeliefState(BeliefState beliefState) {
+		this.geometry = beliefState.geometry();
+		this.wordsPerState = (this.geometry.boardBytes + 7) / 8;
+		this.size = beliefState.size();
+		this.boards = new long[this.size * this.wordsPerState];
+		this.proba = new float[this.size];
+		int i = 0;
+		for(GameState state: beliefState) {
+			state.pack(this.boards, i * this.wordsPerState);
+			this.proba[i] = state.proba();
+			i++;
+		}
+		int squares = this.geometry.rows * this.geometry.columns;
+		if(squares <= 64) {
+			this.red = new long[this.size];
+			this.yellow = new long[this.size];
+			long squareMask = squares == 64? -1L: (1L << squares) - 1;
+			for(i = 0; i < this.size; i++) {
+				//the squares of the first word come first, then the ones of the second word (32 squares per word)
+				int offset = i * this.wordsPerState;
+				long low = PackedBeliefState.compress(this.boards[offset] & EVEN_BITS);
+				long high = PackedBeliefState.compress((this.boards[offset] >>> 1) & EVEN_BITS);
+				for(int word = 1; word < this.wordsPerState && 32 * word < squares; word++) {
+					low |= PackedBeliefState.compress(this.boards[offset + word] & EVEN_BITS) << (32 * word);
+					high |= PackedBeliefState.compress((this.boards[offset + word] >>> 1) & EVEN_BITS) << (32 * word);
+				}
+				//content 1 (yellow) sets the low bit of a square and content 2 (red) the high bit
+				this.yellow[i] = low & squareMask;
+				this.red[i] = high & squareMask;
+			}
+		}
+	}
+
+	/**
+	 * Gather the even bits of a word in its 32 low bits (bit 2k goes to bit k)
+	 * @param x the word, whose odd bits are 0
+	 * @return the compressed word
+	 */
+	private static long compress(long x) {
+		x = (x | (x >>> 1)) & 0x3333333333333333L;
+		x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+		x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+		x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+		x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+		return x;
+	}
+
+	public Geometry geometry() {
+		return this.geometry;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public float proba(int i) {
+		return this.proba[i];
+	}
+
+	/**
+	 * Return the i-th state (a new GameState is created)
+	 * @param i the index of the state
+	 * @return the state
+	 */
+	public GameState get(int i) {
+		return GameState.unpack(this.geometry, this.boards, i * this.wordsPerState, this.proba[i]);
+	}
+
+	/**
+	 * Return the mask of the red pieces of a state (only for the boards of at most 64 squares)
+	 * @param i the index of the state
+	 * @return the mask of the red pieces
+	 */
+	public long redMask(int i) {
+		return this.red[i];
+	}
+
+	/**
+	 * Return the mask of the yellow pieces of a state (only for the boards of at most 64 squares)
+	 * @param i the index of the state
+	 * @return the mask of the yellow pieces
+	 */
+	public long yellowMask(int i) {
+		return this.yellow[i];
+	}
+
+	private boolean bit(int i, int bit) {
+		return ((this.boards[i * this.wordsPerState + bit / 64] >>> (bit % 64)) & 1) != 0;
+	}
+
+	/**
+	 * Check if the game is over in all the states
+	 * @return true if all the games are over
+	 */
+	public boolean isGameOver() {
+		for(int i = 0; i < this.size; i++) {
+			if(!this.bit(i, this.geometry.gameOverBit))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return whose turn it is (it is the same in all the states)
+	 * @return true if it is the turn of the opponent (yellow)
+	 */
+	public boolean turn() {
+		return this.bit(0, this.geometry.turnBit);
+	}
+
+	public float probaSum() {
+		float sum = 0;
+		for(int i = 0; i < this.size; i++) {
+			sum += this.proba[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes the heuristic of the belief state, equal to AI.heuristic(BeliefState) (only for the boards of at most 64 squares)
+	 * @param evaluator the batch evaluator
+	 * @return the sum of the heuristic values of the states
+	 */
+	public double heuristic(BatchEvaluator evaluator) {
+		return evaluator.evaluate(this.geometry, this.red, this.yellow, this.proba, this.size, new double[this.size]);
+	}
+
+	public Iterator<GameState> iterator() {
+		return new Iterator<GameState>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return this.next < PackedBeliefState.this.size;
+			}
+
+			public GameState next() {
+				if(!this.hasNext())
+					throw new NoSuchElementException();
+				return PackedBeliefState.this.get(this.next++);
+			}
+		};
+	}
+}
@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.Random;
 
 public class ProbabilisticOpponentAI {
 	/**
@@ -7,22 +7,123 @@ public class ProbabilisticOpponentAI {
 	 * @return an index corresponding the column played by the opponent. If the game is full (no move available) then it return -1.
 	 */
 	public int decision(GameState game) {
+		MoveList policy = ProbabilisticOpponentAI.policy(game);
+		if(policy.isEmpty())
+			return -1;
+		return ProbabilisticOpponentAI.sample(policy, Math.random());
+	}
+	
+	/**
+	 * Compute the next move of the opponent with a given source of random numbers, so that a game can be replayed with the same choices of the opponent (see decision(GameState))
+	 * @param game current state of the game (which is fully visible)
+	 * @param random the source of random numbers
+	 * @return an index corresponding the column played by the opponent. If the game is full (no move available) then it return -1.
+	 */
+	public int decision(GameState game, Random random) {
+		MoveList policy = ProbabilisticOpponentAI.policy(game);
+		if(policy.isEmpty())
+			return -1;
+		return ProbabilisticOpponentAI.sample(policy, random.nextDouble());
+	}
+	
+	//column of the policy drawn by a random number in [0, 1)
+	private static int sample(MoveList policy, double rand) {
+		double cumul = 0;
+		for(int i = 0; i < policy.size(); i++) {
+			cumul += policy.score(i);
+			if(rand < cumul) {
+				return policy.get(i);
+			}
+		}
+		return policy.get(policy.size() - 1);
+	}
+	
+	/**
+	 * Compute the probability of each move of the opponent (the process used by decision). If a move wins the game, it is played for sure. Otherwise the moves after which the player cannot win immediately
+	 * are chosen with a probability proportional to their heuristic value, and if there is no such move, the moves which leave the fewest winning moves to the player are chosen uniformly.
+	 * The winning moves of both players are found with the bitboards of a ThreatMap, without playing the moves.
+	 * @param game current state of the game (which is fully visible)
+	 * @return the list of the columns that the opponent may play, the score of each column being the probability to play it. The list is empty if the game is full.
+	 */
+	public static MoveList policy(GameState game) {
+		if(game.isGameOver() || !ThreatMap.fits(game.geometry()))
+			return ProbabilisticOpponentAI.policyByCopies(game);
+		RandomSelector rs = new RandomSelector();
+		MoveList listColumn = new MoveList();
+		MoveList listGameOver = new MoveList();
+		int minGameOver = Integer.MAX_VALUE;
+		ThreatMap threats = new ThreatMap(game);
+		int player = game.turn()? 1: 2;
+		long wins = threats.wins(player);
+		if(wins != 0) {
+			listColumn.add(threats.column(Long.lowestOneBit(wins)), 1.);
+			return listColumn;
+		}
+		long allowingReplyWin = threats.allowingReplyWin(player);
+		int columns = game.geometry().columns;
+		for(int column = 0; column < columns; column++) {
+			long square = threats.square(column);
+			if(square == 0)
+				continue;
+			if((allowingReplyWin & square) == 0) {
+				rs.add(ProbabilisticOpponentAI.heuristicValue(game, column));
+				listColumn.add(column);
+			}
+			else {
+				int nbrGameOver = Long.bitCount(threats.replyWins(player, square));
+				if(minGameOver > nbrGameOver) {
+					minGameOver = nbrGameOver;
+					listGameOver.clear();
+					listGameOver.add(column);
+				}
+				else {
+					if(minGameOver == nbrGameOver) {
+						listGameOver.add(column);
+					}
+				}
+			}
+		}
+		if(listColumn.isEmpty()) {
+			for(int i = 0; i < listGameOver.size(); i++) {
+				listColumn.add(listGameOver.get(i));
+				rs.add(1);
+			}
+		}
+		for(int i = 0; i < listColumn.size(); i++) {
+			listColumn.setScore(i, rs.probability(i));
+		}
+		return listColumn;
+	}
+	
+	/**
+	 * Compute the probabilities of policy by playing each move of the opponent and each answer of the player on copies of the state. It is used when the board does not fit in the bitboards
+	 * of ThreatMap (and when the game is over), and it gives the same probabilities as the bitboards otherwise.
+	 * @param game current state of the game (which is fully visible)
+	 * @return the list of the columns that the opponent may play, the score of each column being the probability to play it
+	 */
+	static MoveList policyByCopies(GameState game) {
 		RandomSelector rs = new RandomSelector();
-		ArrayList<Integer> listColumn = new ArrayList<Integer>();
-		ArrayList<Integer> listGameOver = new ArrayList<Integer>();
+		MoveList listColumn = new MoveList();
+		MoveList listGameOver = new MoveList();
 		int minGameOver = Integer.MAX_VALUE;
-		for(int column = 0; column < 7; column++) {
+		int columns = game.geometry().columns;
+		for(int column = 0; column < columns; column++) {
 			if(!game.isFull(column)) {
 				GameState copy = game.copy();
 				copy.putPiece(column);
-				if(copy.isGameOver())
-					return column;
+				if(copy.isGameOver()) {
+					listColumn.clear();
+					listColumn.add(column, 1.);
+					return listColumn;
+				}
 				int nbrGameOver = 0;
-				for(int i = 0; i < 7; i++) {
-					GameState copycopy = copy.copy();
-					copycopy.putPiece(i);
-					if(copycopy.isGameOver()) {
-						nbrGameOver++;
+				for(int i = 0; i < columns; i++) {
+					if(!copy.isFull(i)) {
+						GameState copycopy = copy.copy();
+						copycopy.putPiece(i);
+						if(copycopy.isGameOver()) {
+							nbrGameOver++;
+						}
 					}
 				}
 				if(nbrGameOver == 0) {
@@ -43,16 +144,16 @@ public class ProbabilisticOpponentAI {
 				}
 			}
 		}
-		if(listColumn.size() > 0) {
-			//System.out.println(game.toString() + "\n" + rs.toString());
-			return listColumn.get(rs.randomChoice());
-		}
-		else {
+		if(listColumn.isEmpty()) {
 			for(int i = 0; i < listGameOver.size(); i++) {
+				listColumn.add(listGameOver.get(i));
 				rs.add(1);
 			}
-			return listGameOver.get(rs.randomChoice());
 		}
+		for(int i = 0; i < listColumn.size(); i++) {
+			listColumn.setScore(i, rs.probability(i));
+		}
+		return listColumn;
 	}
 	
 	/**
@@ -63,6 +164,11 @@ public class ProbabilisticOpponentAI {
 	 */
 	public static float heuristicValue(GameState game, int column) {
 		float hValue = Float.MIN_NORMAL;
+		//number of pieces that must be aligned with the piece played, and last row and column of the board
+		int line = game.geometry().k - 1;
+		int rows = game.geometry().rows;
+		int lastRow = rows - 1;
+		int lastColumn = game.geometry().columns - 1;
 		int row = 0;
 		while(game.content(row, column) != 0) {
 			row++;
@@ -74,8 +180,8 @@ public class ProbabilisticOpponentAI {
 				southPieces++;
 			}
 		}
-		if(southPieces + 6 - row > 3) {
-			hValue += (southPieces + 1.) * (southPieces + 1.) / (southPieces + 6. - row);
+		if(southPieces + rows - row > line) {
+			hValue += (southPieces + 1.) * (southPieces + 1.) / (southPieces + rows - row);
 		}
 		
 		int westPieces = 0, west = 0;
@@ -86,13 +192,13 @@ public class ProbabilisticOpponentAI {
 			}
 		}
 		int estPieces = 0, est = 0;
-		while(column + est < 6 && game.content(row, column + est + 1) != 2) {
+		while(column + est < lastColumn && game.content(row, column + est + 1) != 2) {
 			est++;
 			if(game.content(row, column + est) == 1) {
 				estPieces++;
 			}
 		}
-		if(est + west > 2) {
+		if(est + west >= line) {
 			hValue += (estPieces + westPieces + 1.) * (estPieces + westPieces + 1.) / (est + west + 1.);
 		}
 		int southWestPieces = 0, southWest = 0;
@@ -103,30 +209,30 @@ public class ProbabilisticOpponentAI {
 			}
 		}
 		int northEstPieces = 0, northEst = 0;
-		while(row + northEst < 5 && column + northEst < 6 && game.content(row + northEst + 1, column + northEst + 1) != 2) {
+		while(row + northEst < lastRow && column + northEst < lastColumn && game.content(row + northEst + 1, column + northEst + 1) != 2) {
 			northEst++;
 			if(game.content(row + northEst, column + northEst) == 1) {
 				northEstPieces++;
 			}
 		}
-		if(southWest + northEst > 2) {
+		if(southWest + northEst >= line) {
 			hValue += (southWestPieces + northEstPieces + 1.) * (southWestPieces + northEstPieces + 1.) / (southWest + northEst + 1.);
 		}
 		int southEstPieces = 0, southEst = 0;
-		while(southEst < row && column + southEst < 6 && game.content(row - southEst - 1, column + southEst + 1) != 2) {
+		while(southEst < row && column + southEst < lastColumn && game.content(row - southEst - 1, column + southEst + 1) != 2) {
 			southEst++;
 			if(game.content(row - southEst, column + southEst) == 1) {
 				southEstPieces++;
 			}
 		}
 		int northWestPieces = 0, northWest = 0;
-		while(row + northWest < 5 && northWest < column  && game.content(row + northWest + 1, column - northWest - 1) != 2) {
+		while(row + northWest < lastRow && northWest < column  && game.content(row + northWest + 1, column - northWest - 1) != 2) {
 			northWest++;
 			if(game.content(row + northWest, column - northWest) == 1) {
 				northWestPieces++;
 			}
 		}
-		if(northWest + southEst > 2) {
+		if(northWest + southEst >= line) {
 			hValue += (northWestPieces + southEstPieces + 1.) * (northWestPieces + southEstPieces + 1.) / (northWest + southEst + 1.);
 		}
 		return hValue;
@@ -1,38 +1,42 @@
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class RandomSelector {
-	public ArrayList<Float> proba;
+	public float[] proba;
+	public int size = 0;
 	public float somme = 0;
 	
 	public RandomSelector() {
-		this.proba = new ArrayList<Float>();
+		this.proba = new float[MoveList.CAPACITY];
 	}
 	
 	public void add(float i) {
-		this.proba.add(i);
+		if(this.size == this.proba.length) {
+			this.proba = Arrays.copyOf(this.proba, this.size * 2);
+		}
+		this.proba[this.size++] = i;
 		this.somme += i;
 	}
 	
 	public int randomChoice() {
 		double rand = Math.random() * this.somme;
 		float cumul = 0;
-		for(int j = 0; j < this.proba.size(); j++) {
-			cumul += this.proba.get(j).floatValue();
+		for(int j = 0; j < this.size; j++) {
+			cumul += this.proba[j];
 			if(rand < cumul) {
 				return j;
 			}
 		}
-		return this.proba.size() - 1;
+		return this.size - 1;
 	}
 	
 	public float probability(int i) {
-		return this.proba.get(i) / this.somme;
+		return this.proba[i] / this.somme;
 	}
 	
 	public String toString() {
 		String s = "";
-		for(float f: this.proba) {
-			s += f + " ";
+		for(int j = 0; j < this.size; j++) {
+			s += this.proba[j] + " ";
 		}
 		return s;
 	}
@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of records with many producers and a single consumer. Each slot has a sequence number telling whether it is free for the producer of a given position
+ * or filled for the consumer: a producer claims a position with a compare-and-set on the tail, writes its record and then publishes the slot, and the consumer reads the slots in order.
+ * A producer never waits: if the queue is full, the record is refused.
+ */
+public class RecordRingBuffer {
+	private final int mask;
+	private final byte[][] records;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail;
+	//only read and written by the consumer
+	private long head;
+
+	/**
+	 * Construct an empty queue
+	 * @param capacity the maximum number of records in the queue (rounded up to a power of 2)
+	 */
+	public RecordRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = size - 1;
+		this.records = new byte[size][];
+		this.sequences = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.tail = new AtomicLong();
+		this.head = 0;
+	}
+
+	/**
+	 * Add a record at the end of the queue (it may be called by any thread)
+	 * @param record the record
+	 * @return true if the record has been added, and false if the queue is full
+	 */
+	public boolean offer(byte[] record) {
+		long position = this.tail.get();
+		while(true) {
+			int index = (int) position & this.mask;
+			long difference = this.sequences.get(index) - position;
+			if(difference == 0) {
+				if(this.tail.compareAndSet(position, position + 1)) {
+					this.records[index] = record;
+					this.sequences.lazySet(index, position + 1);
+					return true;
+				}
+				position = this.tail.get();
+			}
+			else if(difference < 0) {
+				return false;
+			}
+			else {
+				position = this.tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the first record of the queue (it must be called by a single thread)
+	 * @return the record, or null if the queue is empty
+	 */
+	public byte[] poll() {
+		int index = (int) this.head & this.mask;
+		if(this.sequences.get(index) != this.head + 1)
+			return null;
+		byte[] record = this.records[index];
+		this.records[index] = null;
+		this.sequences.lazySet(index, this.head + this.mask + 1);
+		this.head++;
+		return record;
+	}
+}
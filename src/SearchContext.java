@@ -0,0 +1,52 @@
+/**
+ * Data shared by all the nodes of a search: the arena in which the plan is stored, the move ordering tables, the values already computed
+ * (plans of the or-nodes and heuristic values of the belief states, both keyed by the canonical form of the belief states) and the statistics of the search.
+ * Each thread has its own context (see AI.CONTEXT), which is reset at the beginning of each search.
+ */
+public class SearchContext {
+	final NodeArena arena;
+	final MoveOrdering ordering;
+	final TranspositionTable transpositions;
+	final ExploredSet evaluations;
+	final ExploredSet orderingEvaluations;
+	final SearchStats stats;
+	//solver of the fully visible positions, its transposition table is kept from one search to the next since the values of the positions do not change
+	//(the consecutive decisions of a game share many positions), and it is bounded by ExpectimaxSolver.DEFAULT_ENTRIES since every thread which searches has one
+	final ExpectimaxSolver solver;
+	//evaluators used to order the moves and to evaluate the leaves of the search
+	Evaluator orderingEvaluator;
+	Evaluator leafEvaluator;
+	
+	public SearchContext() {
+		this.arena = new NodeArena();
+		this.ordering = new MoveOrdering();
+		this.transpositions = new TranspositionTable();
+		this.evaluations = new ExploredSet();
+		this.orderingEvaluations = new ExploredSet();
+		this.stats = new SearchStats();
+		this.solver = new ExpectimaxSolver(AI.SOLVER_DEPTH);
+		this.orderingEvaluator = AI.DEFAULT_EVALUATOR;
+		this.leafEvaluator = AI.DEFAULT_EVALUATOR;
+	}
+	
+	/**
+	 * Return the cache of the values computed by an evaluator during the search
+	 * @param evaluator the evaluator (the ordering or the leaf evaluator)
+	 * @return the cache of its values
+	 */
+	ExploredSet evaluations(Evaluator evaluator) {
+		return evaluator == this.leafEvaluator? this.evaluations: this.orderingEvaluations;
+	}
+	
+	/**
+	 * Release the plan of the previous search and prepare the ordering tables for a new one
+	 */
+	public void newSearch() {
+		this.arena.clear();
+		this.ordering.newSearch();
+		this.transpositions.clear();
+		this.evaluations.clear();
+		this.orderingEvaluations.clear();
+		this.stats.reset();
+	}
+}
@@ -0,0 +1,57 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted at the end of each decision of the search (only when it is enabled in the flight recording, e.g. with -XX:StartFlightRecording).
+ */
+@Name("connect4.SearchDecision")
+@Label("Search Decision")
+@Category("Connect 4")
+@Description("One call to AI.findNextMove")
+public class SearchDecisionEvent extends Event {
+	@Label("Move")
+	int move;
+	@Label("Belief State Size")
+	int beliefStateSize;
+	@Label("Or-Nodes")
+	long orNodes;
+	@Label("And-Nodes")
+	long andNodes;
+	@Label("Predict Calls")
+	long predictCalls;
+	@Label("PutPiecePlayer Calls")
+	long putPiecePlayerCalls;
+	@Label("Heuristic Evaluations")
+	long heuristicEvaluations;
+	@Label("Evaluation Cache Hits")
+	long evaluationHits;
+	@Label("Evaluation Cache Misses")
+	long evaluationMisses;
+	@Label("Transposition Hits")
+	long transpositionHits;
+	@Label("Transposition Misses")
+	long transpositionMisses;
+	
+	/**
+	 * Fill the event with the statistics of a decision
+	 * @param stats the statistics of the decision
+	 * @param move the column played
+	 * @param beliefStateSize the size of the belief state of the decision
+	 */
+	public void set(SearchStats stats, int move, int beliefStateSize) {
+		this.move = move;
+		this.beliefStateSize = beliefStateSize;
+		this.orNodes = stats.orNodes();
+		this.andNodes = stats.andNodes();
+		this.predictCalls = stats.predictCalls();
+		this.putPiecePlayerCalls = stats.putPiecePlayerCalls();
+		this.heuristicEvaluations = stats.heuristicEvaluations();
+		this.evaluationHits = stats.evaluationHits();
+		this.evaluationMisses = stats.evaluationMisses();
+		this.transpositionHits = stats.transpositionHits();
+		this.transpositionMisses = stats.transpositionMisses();
+	}
+}
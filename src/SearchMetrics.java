@@ -0,0 +1,87 @@
+/**
+ * Metrics aggregated over all the decisions of the search, for all threads. The statistics of a decision (see SearchStats) are added once the decision is taken,
+ * so the synchronization cost is paid once per decision and not once per node.
+ */
+public class SearchMetrics {
+	private static long decisions = 0;
+	private static long orNodes = 0;
+	private static long andNodes = 0;
+	private static long predictCalls = 0, predictNanos = 0;
+	private static long putPiecePlayerCalls = 0, putPiecePlayerNanos = 0;
+	private static long heuristicEvaluations = 0;
+	private static long evaluationHits = 0, evaluationMisses = 0;
+	private static long transpositionHits = 0, transpositionMisses = 0;
+	//time of the decisions (in microseconds), nodes per decision, and size of the belief states met by the search
+	private static Histogram decisionMicros = new Histogram();
+	private static Histogram nodesPerDecision = new Histogram();
+	private static Histogram beliefSizes = new Histogram();
+	
+	/**
+	 * Add the statistics of a decision to the metrics
+	 * @param stats the statistics of the decision
+	 */
+	public static synchronized void record(SearchStats stats) {
+		decisions++;
+		orNodes += stats.orNodes();
+		andNodes += stats.andNodes();
+		predictCalls += stats.predictCalls();
+		predictNanos += stats.predictNanos();
+		putPiecePlayerCalls += stats.putPiecePlayerCalls();
+		putPiecePlayerNanos += stats.putPiecePlayerNanos();
+		heuristicEvaluations += stats.heuristicEvaluations();
+		evaluationHits += stats.evaluationHits();
+		evaluationMisses += stats.evaluationMisses();
+		transpositionHits += stats.transpositionHits();
+		transpositionMisses += stats.transpositionMisses();
+		decisionMicros.record(stats.decisionNanos() / 1000);
+		nodesPerDecision.record(stats.orNodes() + stats.andNodes());
+		beliefSizes.add(stats.beliefSizes());
+	}
+	
+	public static synchronized void reset() {
+		decisions = orNodes = andNodes = 0;
+		predictCalls = predictNanos = putPiecePlayerCalls = putPiecePlayerNanos = 0;
+		heuristicEvaluations = evaluationHits = evaluationMisses = transpositionHits = transpositionMisses = 0;
+		decisionMicros.reset();
+		nodesPerDecision.reset();
+		beliefSizes.reset();
+	}
+	
+	public static synchronized long decisions() {
+		return decisions;
+	}
+	
+	public static synchronized long nodes() {
+		return orNodes + andNodes;
+	}
+	
+	public static synchronized long heuristicEvaluations() {
+		return heuristicEvaluations;
+	}
+	
+	/**
+	 * Fraction of the evaluations of belief states answered by the evaluation cache
+	 * @return the hit rate (0 if there was no evaluation)
+	 */
+	public static synchronized double evaluationHitRate() {
+		long total = evaluationHits + evaluationMisses;
+		return total == 0? 0: ((double) evaluationHits) / total;
+	}
+	
+	public static synchronized double transpositionHitRate() {
+		long total = transpositionHits + transpositionMisses;
+		return total == 0? 0: ((double) transpositionHits) / total;
+	}
+	
+	public static synchronized String summary() {
+		String s = "Decisions: " + decisions + " or-nodes = " + orNodes + " and-nodes = " + andNodes + "\n";
+		s += "decision time (us): " + decisionMicros + "\n";
+		s += "nodes per decision: " + nodesPerDecision + "\n";
+		s += "belief sizes: " + beliefSizes + "\n";
+		s += "predict: " + predictCalls + " calls, " + (predictCalls == 0? 0: predictNanos / predictCalls) + " ns/call\n";
+		s += "putPiecePlayer: " + putPiecePlayerCalls + " calls, " + (putPiecePlayerCalls == 0? 0: putPiecePlayerNanos / putPiecePlayerCalls) + " ns/call\n";
+		s += "heuristic evaluations = " + heuristicEvaluations + "\n";
+		s += "evaluation cache hit rate = " + String.format("%.3f", evaluationHitRate()) + " transposition hit rate = " + String.format("%.3f", transpositionHitRate());
+		return s;
+	}
+}
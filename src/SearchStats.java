@@ -0,0 +1,163 @@
+/**
+ * Statistics recorded during one decision of the search (one call to AI.findNextMove). Each thread records into the statistics of its own SearchContext,
+ * so recording is only a few increments without synchronization. At the end of the decision the statistics are added to SearchMetrics and, if it is enabled, emitted as a JFR event.
+ * The recording can be disabled with the system property ai.stats=false.
+ */
+public class SearchStats {
+	public final static boolean ENABLED = !"false".equals(System.getProperty("ai.stats"));
+	private final static int MAX_DEPTH = 64;
+	
+	//number of or-nodes and and-nodes expanded at each depth
+	long[] orNodes = new long[MAX_DEPTH];
+	long[] andNodes = new long[MAX_DEPTH];
+	//size of the belief states met by the search
+	Histogram beliefSizes = new Histogram();
+	long predictCalls, predictNanos;
+	long putPiecePlayerCalls, putPiecePlayerNanos;
+	//number of game states evaluated by the heuristic
+	long heuristicEvaluations;
+	long evaluationHits, evaluationMisses;
+	long transpositionHits, transpositionMisses;
+	long decisionNanos;
+	
+	public void reset() {
+		for(int depth = 0; depth < MAX_DEPTH; depth++) {
+			this.orNodes[depth] = 0;
+			this.andNodes[depth] = 0;
+		}
+		this.beliefSizes.reset();
+		this.predictCalls = this.predictNanos = 0;
+		this.putPiecePlayerCalls = this.putPiecePlayerNanos = 0;
+		this.heuristicEvaluations = 0;
+		this.evaluationHits = this.evaluationMisses = 0;
+		this.transpositionHits = this.transpositionMisses = 0;
+		this.decisionNanos = 0;
+	}
+	
+	public void orNode(int depth, BeliefState state) {
+		this.orNodes[depth % MAX_DEPTH]++;
+		this.beliefSizes.record(state.size());
+	}
+	
+	public void andNode(int depth, BeliefState state) {
+		this.andNodes[depth % MAX_DEPTH]++;
+		this.beliefSizes.record(state.size());
+	}
+	
+	public void predict(long nanos) {
+		this.predictCalls++;
+		this.predictNanos += nanos;
+	}
+	
+	public void putPiecePlayer(long nanos) {
+		this.putPiecePlayerCalls++;
+		this.putPiecePlayerNanos += nanos;
+	}
+	
+	public void evaluation(boolean hit, BeliefState state) {
+		if(hit) {
+			this.evaluationHits++;
+		}
+		else {
+			this.evaluationMisses++;
+			this.heuristicEvaluations += state.size();
+		}
+	}
+	
+	public void transposition(boolean hit) {
+		if(hit)
+			this.transpositionHits++;
+		else
+			this.transpositionMisses++;
+	}
+	
+	public long orNodes() {
+		long total = 0;
+		for(long n: this.orNodes)
+			total += n;
+		return total;
+	}
+	
+	public long andNodes() {
+		long total = 0;
+		for(long n: this.andNodes)
+			total += n;
+		return total;
+	}
+	
+	/**
+	 * Average number of moves searched below an or-node which is not a leaf
+	 * @return the average branching factor
+	 */
+	public double branchingFactor() {
+		long expanded = this.orNodes() - this.orNodes[(AI.DEPTH + 1) % MAX_DEPTH];
+		return expanded == 0? 0: ((double) this.putPiecePlayerCalls) / expanded;
+	}
+	
+	public long orNodes(int depth) {
+		return this.orNodes[depth % MAX_DEPTH];
+	}
+	
+	public long andNodes(int depth) {
+		return this.andNodes[depth % MAX_DEPTH];
+	}
+	
+	public Histogram beliefSizes() {
+		return this.beliefSizes;
+	}
+	
+	public long predictCalls() {
+		return this.predictCalls;
+	}
+	
+	public long predictNanos() {
+		return this.predictNanos;
+	}
+	
+	public long putPiecePlayerCalls() {
+		return this.putPiecePlayerCalls;
+	}
+	
+	public long putPiecePlayerNanos() {
+		return this.putPiecePlayerNanos;
+	}
+	
+	public long heuristicEvaluations() {
+		return this.heuristicEvaluations;
+	}
+	
+	public long evaluationHits() {
+		return this.evaluationHits;
+	}
+	
+	public long evaluationMisses() {
+		return this.evaluationMisses;
+	}
+	
+	public long transpositionHits() {
+		return this.transpositionHits;
+	}
+	
+	public long transpositionMisses() {
+		return this.transpositionMisses;
+	}
+	
+	public long decisionNanos() {
+		return this.decisionNanos;
+	}
+	
+	public String toString() {
+		String s = "Decision: " + this.decisionNanos / 1000 + " us\n";
+		for(int depth = 1; depth < MAX_DEPTH && (this.orNodes[depth] > 0 || this.andNodes[depth] > 0); depth++) {
+			s += "depth " + depth + ": or-nodes = " + this.orNodes[depth] + " and-nodes = " + this.andNodes[depth] + "\n";
+		}
+		s += "branching factor = " + String.format("%.2f", this.branchingFactor()) + "\n";
+		s += "belief sizes: " + this.beliefSizes + "\n";
+		s += "predict: " + this.predictCalls + " calls, " + this.predictNanos / 1000 + " us\n";
+		s += "putPiecePlayer: " + this.putPiecePlayerCalls + " calls, " + this.putPiecePlayerNanos / 1000 + " us\n";
+		s += "heuristic evaluations = " + this.heuristicEvaluations + "\n";
+		s += "evaluation cache: " + this.evaluationHits + " hits, " + this.evaluationMisses + " misses\n";
+		s += "transposition table: " + this.transpositionHits + " hits, " + this.transpositionMisses + " misses";
+		return s;
+	}
+}
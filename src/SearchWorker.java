@@ -0,0 +1,126 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker process of DistributedSearch. It receives belief states encoded with BeliefStateCodec, searches each of them with AI.findPlan and returns the value of its plan,
+ * computed as AI.andSearch values the subplans. Each connection is served by its own thread with its own search context, so the coordinator opens as many connections as the worker has cores.
+ *
+ * Protocol (big-endian, one answer per request, in order):
+ *   request: int identifier of the job, int length, length bytes of the encoding of the belief state
+ *   answer:  int identifier of the job, boolean true if the belief state has a plan, double value of the plan, long time of the search in nanoseconds
+ * usage: java SearchWorker [port] [address to listen on, the loopback interface by default]
+ */
+public class SearchWorker {
+	public final static int DEFAULT_PORT = 4445;
+	//maximum length of the encoding of a belief state received (the size of a segment of SessionStore)
+	private final static int MAX_LENGTH = 1 << 24;
+
+	private final ServerSocket serverSocket;
+
+	/**
+	 * Construct a worker
+	 * @param port the port of the worker (0 for any free port)
+	 * @param address the address to listen on
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SearchWorker(int port, InetAddress address) throws IOException {
+		this.serverSocket = new ServerSocket(port, 64, address);
+	}
+
+	public int port() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accept the connections of the coordinators until the worker is closed
+	 */
+	public void serve() {
+		AtomicInteger count = new AtomicInteger();
+		while(!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				Thread thread = new Thread(() -> SearchWorker.handle(socket), "search-worker-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.start();
+			}
+			catch(IOException e) {
+				if(!this.serverSocket.isClosed())
+					System.err.println("Cannot accept a connection: " + e.getMessage());
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+
+	//serve the requests of a connection
+	private static void handle(Socket socket) {
+		try(Socket s = socket;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+			s.setTcpNoDelay(true);
+			while(true) {
+				int id = in.readInt();
+				int length = in.readInt();
+				//the length comes from the network, it is checked before the buffer is allocated
+				if(length < 0 || length > MAX_LENGTH)
+					throw new IOException("Invalid length " + length + " of job " + id);
+				byte[] data = new byte[length];
+				in.readFully(data);
+				long start = System.nanoTime();
+				BeliefState beliefState;
+				try {
+					beliefState = BeliefStateCodec.decode(data);
+				}
+				catch(RuntimeException e) {
+					throw new IOException("Invalid belief state of job " + id + ": " + e, e);
+				}
+				double[] value = new double[1];
+				boolean hasPlan = SearchWorker.search(beliefState, value);
+				out.writeInt(id);
+				out.writeBoolean(hasPlan);
+				out.writeDouble(value[0]);
+				out.writeLong(System.nanoTime() - start);
+				out.flush();
+			}
+		}
+		catch(EOFException e) {
+			//the coordinator closed the connection
+		}
+		catch(IOException | IllegalArgumentException e) {
+			System.err.println("Connection lost: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Search a belief state in which it is the turn of the AI, and compute the value of its plan as a subplan of an and-node (see AI.andSearch)
+	 * @param beliefState the belief state
+	 * @param value array in which the value of the plan is written
+	 * @return false if the belief state has no plan
+	 */
+	static boolean search(BeliefState beliefState, double[] value) {
+		ContingencyPlan plan = AI.findPlan(beliefState);
+		if(plan == null)
+			return false;
+		SearchContext context = AI.CONTEXT.get();
+		value[0] = plan.getIsLeaf()? AI.heuristic(beliefState, context.leafEvaluator, context): plan.heuristic();
+		return true;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0? Integer.parseInt(args[0]): DEFAULT_PORT;
+		InetAddress address = args.length > 1? InetAddress.getByName(args[1]): InetAddress.getLoopbackAddress();
+		SearchWorker worker = new SearchWorker(port, address);
+		System.out.println("Listening on " + address.getHostAddress() + ":" + worker.port());
+		worker.serve();
+	}
+}
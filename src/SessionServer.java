@@ -0,0 +1,295 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local server of games against the AI. Each connection is served by its own thread, which only parses the requests and waits for the answers, so it is a virtual thread
+ * when the JVM provides them (Java 21 and later) and a platform thread with a small stack otherwise. The computations of the moves (the search of the AI and the updates of the belief states)
+ * are run on a bounded pool of platform threads, one per processor, so that many idle sessions cost only their state while the busy ones share all the cores.
+ * The sessions are kept when their connection is closed, and can be resumed by another connection. If the server has a SessionStore, the belief states of the sessions
+ * without request for a given time are spilled to the store, so that the memory used follows the number of active sessions.
+ *
+ * Protocol (one line per request and per answer, columns numbered from 0, the AI plays red and the client plays yellow):
+ *   NEW              -> SESSION id, then the answer of the first move of the AI
+ *   RESUME id        -> SESSION id (the session must not be used by another connection)
+ *   MOVE column      -> PLAY column [END result] (move of the AI) or END result, with result 0 for a tie, 1 if yellow won and 2 if red won
+ *   CLOSE            -> BYE (the session is deleted)
+ *   any error        -> ERROR message
+ * usage: java SessionServer [port] [threads of computation] [file of the idle sessions] [idle time in seconds]
+ */
+public class SessionServer {
+	public final static int DEFAULT_PORT = 4444;
+	//stack size of the threads of the connections when there is no virtual thread (they only parse the requests)
+	private final static long STACK_SIZE = 256 * 1024;
+
+	private final ServerSocket serverSocket;
+	private final Geometry geometry;
+	private final ExecutorService connections;
+	private final ExecutorService computations;
+	private final ConcurrentHashMap<Long, GameSession> sessions;
+	private final AtomicLong nextId;
+	//sockets of the open connections, closed with the server (a thread reading a socket is not interrupted by shutdownNow)
+	private final Set<Socket> sockets;
+	//store of the belief states of the idle sessions (or null), and the task which spills them
+	private final SessionStore store;
+	private final long idleNanos;
+	private final ScheduledExecutorService sweeper;
+
+	/**
+	 * Construct a server listening on the loopback interface
+	 * @param port the port of the server (0 for any free port)
+	 * @param threads the number of threads computing the moves
+	 * @param geometry the geometry of the games
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SessionServer(int port, int threads, Geometry geometry) throws IOException {
+		this(port, threads, geometry, null, 0);
+	}
+
+	/**
+	 * Construct a server listening on the loopback interface, which spills the belief states of the idle sessions to a store
+	 * @param port the port of the server (0 for any free port)
+	 * @param threads the number of threads computing the moves
+	 * @param geometry the geometry of the games
+	 * @param store the store of the belief states of the idle sessions, or null to keep all the sessions in memory
+	 * @param idleMillis time without request after which a session is idle (in milliseconds)
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SessionServer(int port, int threads, Geometry geometry, SessionStore store, long idleMillis) throws IOException {
+		this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		this.geometry = geometry;
+		this.connections = SessionServer.connectionExecutor();
+		AtomicInteger count = new AtomicInteger();
+		this.computations = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "session-computation-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.sessions = new ConcurrentHashMap<Long, GameSession>();
+		this.nextId = new AtomicLong();
+		this.sockets = ConcurrentHashMap.newKeySet();
+		this.store = store;
+		this.idleNanos = idleMillis * 1000000;
+		if(store == null) {
+			this.sweeper = null;
+		}
+		else {
+			this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "session-sweeper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long period = Math.max(1, idleMillis / 2);
+			this.sweeper.scheduleWithFixedDelay(this::spillIdleSessions, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Spill the belief states of the sessions without request for the idle time to the store
+	 */
+	private void spillIdleSessions() {
+		long now = System.nanoTime();
+		for(GameSession session: this.sessions.values()) {
+			//a session closed since the iteration started is not spilled
+			if(now - session.lastAccess() > this.idleNanos && !session.isOver() && this.sessions.get(session.id()) == session) {
+				try {
+					session.spill(this.store);
+					//the session has been closed during the spill, and CLOSE may have removed its belief state from the store before it was stored
+					if(this.sessions.get(session.id()) != session)
+						this.store.remove(session.id());
+				}
+				catch(IOException e) {
+					System.err.println("Cannot spill the session " + session.id() + ": " + e.getMessage());
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the executor of the connections: a virtual thread per task if the JVM provides them (the method is looked up at runtime so that the code still compiles and runs with Java 17),
+	 * and otherwise a platform thread per task, with a small stack
+	 * @return the executor
+	 */
+	static ExecutorService connectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException | UnsupportedOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = runnable -> {
+				Thread thread = new Thread(null, runnable, "session-" + count.incrementAndGet(), STACK_SIZE);
+				thread.setDaemon(true);
+				return thread;
+			};
+			return Executors.newCachedThreadPool(factory);
+		}
+	}
+
+	public int port() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	public int sessions() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * Accept the connections until the server is closed
+	 */
+	public void serve() {
+		while(!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				this.sockets.add(socket);
+				this.connections.execute(() -> this.handle(socket));
+			}
+			catch(IOException e) {
+				if(!this.serverSocket.isClosed())
+					System.err.println("Cannot accept a connection: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Stop accepting connections and stop the threads of the server
+	 */
+	public void close() throws IOException {
+		this.serverSocket.close();
+		for(Socket socket: this.sockets) {
+			socket.close();
+		}
+		this.connections.shutdownNow();
+		this.computations.shutdownNow();
+		if(this.sweeper != null)
+			this.sweeper.shutdownNow();
+	}
+
+	/**
+	 * Serve the requests of a connection
+	 * @param socket the socket of the connection
+	 */
+	private void handle(Socket socket) {
+		GameSession session = null;
+		try(Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII), true)) {
+			s.setTcpNoDelay(true);
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] request = line.trim().split("\\s+");
+				try {
+					switch(request[0].toUpperCase()) {
+					case "NEW":
+						if(session != null)
+							session.detach();
+						session = new GameSession(this.nextId.incrementAndGet(), this.geometry);
+						session.attach();
+						this.sessions.put(session.id(), session);
+						out.println("SESSION " + session.id());
+						out.println(this.aiMove(session));
+						break;
+					case "RESUME":
+						GameSession resumed = this.sessions.get(Long.parseLong(request[1]));
+						if(resumed == null)
+							throw new IllegalArgumentException("Unknown session " + request[1]);
+						if(resumed != session && !resumed.attach())
+							throw new IllegalStateException("Session " + request[1] + " is used by another connection");
+						if(session != null && session != resumed)
+							session.detach();
+						session = resumed;
+						out.println("SESSION " + session.id());
+						break;
+					case "MOVE":
+						if(session == null)
+							throw new IllegalStateException("No session");
+						int column = Integer.parseInt(request[1]);
+						GameSession current = session;
+						this.compute(() -> current.opponentMove(column));
+						out.println(current.isOver()? "END " + current.result(): this.aiMove(current));
+						break;
+					case "CLOSE":
+						if(session != null) {
+							this.sessions.remove(session.id());
+							if(this.store != null)
+								this.store.remove(session.id());
+							session = null;
+						}
+						out.println("BYE");
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown request " + request[0]);
+					}
+				}
+				catch(IllegalArgumentException | IllegalStateException | ArrayIndexOutOfBoundsException e) {
+					out.println("ERROR " + e.getMessage());
+				}
+			}
+		}
+		catch(IOException e) {
+			//the connection is lost, the session can be resumed
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.sockets.remove(socket);
+			if(session != null)
+				session.detach();
+		}
+	}
+
+	/**
+	 * Compute the move of the AI on the pool of computation
+	 * @param session the session
+	 * @return the answer to the client
+	 */
+	private String aiMove(GameSession session) throws InterruptedException {
+		int[] column = new int[1];
+		this.compute(() -> column[0] = session.play());
+		return "PLAY " + column[0] + (session.isOver()? " END " + session.result(): "");
+	}
+
+	/**
+	 * Run a computation on the pool of computation, the calling thread waiting for its end
+	 * @param computation the computation
+	 * @throws IllegalArgumentException or IllegalStateException if the computation throws it
+	 */
+	private void compute(Runnable computation) throws InterruptedException {
+		try {
+			this.computations.submit(computation).get();
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0? Integer.parseInt(args[0]): DEFAULT_PORT;
+		int threads = args.length > 1? Integer.parseInt(args[1]): Runtime.getRuntime().availableProcessors();
+		SessionStore store = args.length > 2? new SessionStore(Paths.get(args[2])): null;
+		long idleMillis = args.length > 3? 1000 * Long.parseLong(args[3]): 60000;
+		SessionServer server = new SessionServer(port, threads, Geometry.DEFAULT, store, idleMillis);
+		System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port());
+		server.serve();
+	}
+}
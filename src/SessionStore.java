@@ -0,0 +1,201 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Store of the belief states of idle sessions in a memory-mapped file, so that the heap only holds the belief states of the active sessions (see GameSession.spill).
+ * The belief states are encoded with BeliefStateCodec and appended to segments of SEGMENT bytes of the file. A belief state is removed from the store when it is restored,
+ * and a segment is reused as soon as all its belief states have been removed. When no segment is empty, a segment of which at least half is free is compacted (its belief states
+ * are moved to its start) and the next belief states are appended after them, so that a few long-idle sessions do not keep whole segments, and the file grows with the size
+ * of the belief states of the idle sessions and not with the number of spills.
+ * The pages of the file are kept in memory by the operating system only while they are used.
+ */
+public class SessionStore implements Closeable {
+	private final static int SEGMENT = 1 << 24;
+
+	/**
+	 * Position of a belief state in the file
+	 */
+	private static class Location {
+		final int segment;
+		final int offset;
+		final int length;
+
+		Location(int segment, int offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final FileChannel channel;
+	private final ArrayList<MappedByteBuffer> segments;
+	//number of belief states of each segment which have not been removed, and the number of bytes of their encodings
+	private final ArrayList<Integer> live;
+	private final ArrayList<Integer> liveBytes;
+	private final HashMap<Long, Location> locations;
+	//segment in which the belief states are appended, and position of the next one
+	private int current;
+	private int position;
+	private long bytes;
+
+	/**
+	 * Create a store (the file is replaced if it exists)
+	 * @param file the file of the store
+	 * @throws IOException if the file cannot be opened
+	 */
+	public SessionStore(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.segments = new ArrayList<MappedByteBuffer>();
+		this.live = new ArrayList<Integer>();
+		this.liveBytes = new ArrayList<Integer>();
+		this.locations = new HashMap<Long, Location>();
+		this.current = -1;
+	}
+
+	/**
+	 * Store the belief state of a session (it replaces the belief state stored for the session, if any)
+	 * @param id the identifier of the session
+	 * @param beliefState the belief state
+	 * @return false if the encoding of the belief state does not fit in a segment, the belief state being not stored
+	 * @throws IOException if the file cannot be extended
+	 */
+	public synchronized boolean put(long id, BeliefState beliefState) throws IOException {
+		byte[] data = BeliefStateCodec.encode(beliefState);
+		if(data.length > SEGMENT)
+			return false;
+		this.remove(id);
+		if(this.current < 0 || this.position + data.length > SEGMENT)
+			this.nextSegment(data.length);
+		ByteBuffer segment = this.segments.get(this.current).duplicate();
+		segment.position(this.position);
+		segment.put(data);
+		this.locations.put(id, new Location(this.current, this.position, data.length));
+		this.live.set(this.current, this.live.get(this.current) + 1);
+		this.liveBytes.set(this.current, this.liveBytes.get(this.current) + data.length);
+		this.position += data.length;
+		this.bytes += data.length;
+		return true;
+	}
+
+	/**
+	 * Restore the belief state of a session and remove it from the store
+	 * @param id the identifier of the session
+	 * @return the belief state, or null if there is no belief state stored for the session
+	 */
+	public synchronized BeliefState take(long id) {
+		Location location = this.locations.get(id);
+		if(location == null)
+			return null;
+		ByteBuffer segment = this.segments.get(location.segment).duplicate();
+		segment.position(location.offset);
+		segment.limit(location.offset + location.length);
+		BeliefState beliefState = BeliefStateCodec.decode(segment);
+		this.remove(id);
+		return beliefState;
+	}
+
+	/**
+	 * Remove the belief state of a session from the store
+	 * @param id the identifier of the session
+	 */
+	public synchronized void remove(long id) {
+		Location location = this.locations.remove(id);
+		if(location != null) {
+			this.live.set(location.segment, this.live.get(location.segment) - 1);
+			this.liveBytes.set(location.segment, this.liveBytes.get(location.segment) - location.length);
+			this.bytes -= location.length;
+			//the current segment is empty, the next belief states are written from its start
+			if(location.segment == this.current && this.live.get(this.current) == 0)
+				this.position = 0;
+		}
+	}
+
+	//choose the segment where the next belief states are appended: a segment without belief state, or else the segment with the fewest bytes of belief states
+	//if at least half of it stays free for the next belief states after compaction (so the bytes moved are at most the bytes freed), or else a new segment at the end of the file
+	private void nextSegment(int length) throws IOException {
+		int emptiest = -1;
+		for(int i = 0; i < this.segments.size(); i++) {
+			if(i != this.current && this.live.get(i) == 0) {
+				this.current = i;
+				this.position = 0;
+				return;
+			}
+			if(emptiest < 0 || this.liveBytes.get(i) < this.liveBytes.get(emptiest))
+				emptiest = i;
+		}
+		if(emptiest >= 0 && this.liveBytes.get(emptiest) + length <= SEGMENT / 2) {
+			this.compact(emptiest);
+			return;
+		}
+		this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE, (long) this.segments.size() * SEGMENT, SEGMENT));
+		this.live.add(0);
+		this.liveBytes.add(0);
+		this.current = this.segments.size() - 1;
+		this.position = 0;
+	}
+
+	//move the belief states of a segment to its start, in the order of their positions, and make it the segment where the next belief states are appended
+	private void compact(int index) {
+		ArrayList<Map.Entry<Long, Location>> moved = new ArrayList<Map.Entry<Long, Location>>();
+		for(Map.Entry<Long, Location> entry: this.locations.entrySet()) {
+			if(entry.getValue().segment == index)
+				moved.add(entry);
+		}
+		moved.sort(Comparator.comparingInt(entry -> entry.getValue().offset));
+		ByteBuffer segment = this.segments.get(index).duplicate();
+		int position = 0;
+		for(Map.Entry<Long, Location> entry: moved) {
+			Location location = entry.getValue();
+			//the belief states are moved towards the start, so a belief state only overwrites the ones already moved
+			if(location.offset != position) {
+				byte[] data = new byte[location.length];
+				segment.position(location.offset);
+				segment.get(data);
+				segment.position(position);
+				segment.put(data);
+				entry.setValue(new Location(index, position, location.length));
+			}
+			position += location.length;
+		}
+		this.current = index;
+		this.position = position;
+	}
+
+	/**
+	 * Return the number of belief states in the store
+	 * @return the number of sessions whose belief state is stored
+	 */
+	public synchronized int size() {
+		return this.locations.size();
+	}
+
+	/**
+	 * Return the size of the encodings of the belief states in the store
+	 * @return the number of bytes used by the belief states
+	 */
+	public synchronized long bytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Return the size of the file
+	 * @return the number of bytes of the segments of the file
+	 */
+	public synchronized long fileSize() {
+		return (long) this.segments.size() * SEGMENT;
+	}
+
+	public synchronized void close() throws IOException {
+		this.locations.clear();
+		this.channel.close();
+	}
+}
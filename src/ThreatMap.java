@@ -0,0 +1,190 @@
+/**
+ * Bitboards of a game state used to find the winning moves without playing them. The squares are numbered by column: bit column * (rows + 1) + row is the square (row, column),
+ * and the extra bit of each column (row = rows) is always empty, so that a line shifted out of a column or out of the top of the board does not reach another square.
+ * The squares where a player would complete k pieces in a line (the threats of the player) are computed with a few shifts and ands for each direction, and the moves of the player
+ * which let the opponent win at once are computed from the threats of the opponent. The board must have at most 64 squares including the extra row, and the shifts of the lines
+ * must stay below 64 (see fits).
+ * The main method compares the policy of ProbabilisticOpponentAI computed with the bitboards and with copies of the states on random positions of several geometries.
+ * usage: java ThreatMap [number of games per geometry]
+ */
+public class ThreatMap {
+	private final Geometry geometry;
+	//distance between two adjacent columns in the bitboards
+	private final int stride;
+	//squares of the board, pieces of each player (index 1 for yellow and 2 for red), and lowest empty square of each column which is not full
+	private final long board;
+	private final long[] pieces;
+	private final long playable;
+	//threats of each player, computed the first time they are requested
+	private final long[] threats;
+	private final boolean[] computed;
+
+	/**
+	 * Check if the bitboards of a geometry fit in 64 bits
+	 * @param geometry the geometry of the game
+	 * @return true if the columns, with one extra square each, have at most 64 squares, and if the largest shift of a line (k - 1 squares along a diagonal) is less than 64,
+	 * since the shift counts of Java are taken modulo 64
+	 */
+	public static boolean fits(Geometry geometry) {
+		return geometry.columns * (geometry.rows + 1) <= 64 && (geometry.k - 1) * (geometry.rows + 2) < 64;
+	}
+
+	/**
+	 * Construct the bitboards of a game state
+	 * @param game the state (its geometry must fit, see fits)
+	 */
+	public ThreatMap(GameState game) {
+		this.geometry = game.geometry();
+		this.stride = this.geometry.rows + 1;
+		this.pieces = new long[3];
+		this.threats = new long[3];
+		this.computed = new boolean[3];
+		long board = 0, playable = 0;
+		for(int column = 0; column < this.geometry.columns; column++) {
+			boolean empty = false;
+			for(int row = 0; row < this.geometry.rows; row++) {
+				long bit = 1L << (column * this.stride + row);
+				board |= bit;
+				int content = empty? 0: game.content(row, column);
+				if(content != 0) {
+					this.pieces[content] |= bit;
+				}
+				else if(!empty) {
+					playable |= bit;
+					empty = true;
+				}
+			}
+		}
+		this.board = board;
+		this.playable = playable;
+	}
+
+	/**
+	 * Return the squares where a piece can be played
+	 * @return the lowest empty square of each column which is not full
+	 */
+	public long playable() {
+		return this.playable;
+	}
+
+	/**
+	 * Return the square where a piece is played in a column
+	 * @param column the index of the column
+	 * @return the bit of the lowest empty square of the column, or 0 if the column is full
+	 */
+	public long square(int column) {
+		long columnMask = ((1L << this.geometry.rows) - 1) << (column * this.stride);
+		return this.playable & columnMask;
+	}
+
+	/**
+	 * Return the column of a square
+	 * @param square the bit of a square
+	 * @return the index of its column
+	 */
+	public int column(long square) {
+		return Long.numberOfTrailingZeros(square) / this.stride;
+	}
+
+	/**
+	 * Return the empty squares where a piece of a player would complete k pieces in a line, whether they can be played now or not
+	 * @param player 1 for yellow and 2 for red
+	 * @return the threats of the player
+	 */
+	public long threats(int player) {
+		if(!this.computed[player]) {
+			long pieces = this.pieces[player];
+			long threats = 0;
+			//vertical, horizontal and both diagonals
+			int[] shifts = new int[] {1, this.stride, this.stride + 1, this.stride - 1};
+			int line = this.geometry.k - 1;
+			for(int shift: shifts) {
+				//the square completes a line with before pieces on one side and line - before pieces on the other side
+				for(int before = 0; before <= line; before++) {
+					long squares = this.board;
+					for(int i = 1; i <= before; i++) {
+						squares &= pieces << (i * shift);
+					}
+					for(int i = 1; i <= line - before; i++) {
+						squares &= pieces >>> (i * shift);
+					}
+					threats |= squares;
+				}
+			}
+			this.threats[player] = threats & this.board & ~(this.pieces[1] | this.pieces[2]);
+			this.computed[player] = true;
+		}
+		return this.threats[player];
+	}
+
+	/**
+	 * Return the moves with which a player wins at once
+	 * @param player 1 for yellow and 2 for red
+	 * @return the playable squares which are threats of the player
+	 */
+	public long wins(int player) {
+		return this.threats(player) & this.playable;
+	}
+
+	/**
+	 * Return the moves with which the opponent of a player wins at once after the player plays a given square (which must not win the game)
+	 * @param player 1 for yellow and 2 for red
+	 * @param square the bit of the square played
+	 * @return the squares playable after the move which are threats of the opponent
+	 */
+	public long replyWins(int player, long square) {
+		long playable = (this.playable & ~square) | ((square << 1) & this.board);
+		return this.threats(3 - player) & playable;
+	}
+
+	/**
+	 * Return the moves of a player after which the opponent can win at once (the moves which win the game are not excluded)
+	 * @param player 1 for yellow and 2 for red
+	 * @return the playable squares played by the player after which replyWins is not empty
+	 */
+	public long allowingReplyWin(int player) {
+		long threats = this.threats(3 - player);
+		long wins = threats & this.playable;
+		//a move under a threat of the opponent makes it playable
+		long under = (threats >>> 1) & this.playable;
+		if(wins == 0)
+			return under;
+		//a move on the only winning square of the opponent blocks it
+		if(Long.bitCount(wins) == 1)
+			return (this.playable & ~wins) | under;
+		return this.playable;
+	}
+
+	public static void main(String[] args) {
+		int games = args.length > 0? Integer.parseInt(args[0]): 2000;
+		//the standard board, boards whose bitboards fill the 64 bits, and tall boards whose lines would need shifts of 64 or more (computed with copies)
+		Geometry[] geometries = new Geometry[] {Geometry.DEFAULT, Geometry.of(4, 4, 3), Geometry.of(7, 8, 4), Geometry.of(6, 7, 5), Geometry.of(15, 4, 4), Geometry.of(12, 4, 5), Geometry.of(15, 4, 5)};
+		java.util.Random random = new java.util.Random(0);
+		boolean same = true;
+		for(Geometry geometry: geometries) {
+			int positions = 0, mismatches = 0;
+			for(int i = 0; i < games; i++) {
+				GameState game = new GameState(geometry);
+				while(!game.isGameOver() && !game.isFull()) {
+					MoveList policy = ProbabilisticOpponentAI.policy(game);
+					MoveList expected = ProbabilisticOpponentAI.policyByCopies(game);
+					positions++;
+					boolean equal = policy.size() == expected.size();
+					for(int j = 0; equal && j < policy.size(); j++) {
+						equal = policy.get(j) == expected.get(j) && Math.abs(policy.score(j) - expected.score(j)) <= 1e-12;
+					}
+					if(!equal)
+						mismatches++;
+					int column;
+					do {
+						column = random.nextInt(geometry.columns);
+					} while(game.isFull(column));
+					game.putPiece(column);
+				}
+			}
+			System.out.println(geometry + (ThreatMap.fits(geometry)? " bitboards": " copies") + ": " + positions + " positions, " + mismatches + " mismatches");
+			same &= mismatches == 0;
+		}
+		System.out.println(same? "check passed": "check FAILED");
+	}
+}
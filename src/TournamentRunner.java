@@ -0,0 +1,375 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Headless tournament between configurations of the AI. Each engine plays red against ProbabilisticOpponentAI, whose random choices are drawn from a seed given by the number of the game,
+ * so that all the engines play the game number i against the same sequence of random numbers. Two engines are compared on the games with the same number (paired games):
+ * the engine with the better result on a game number wins the pair, and the pairs with the same result are draws.
+ * The pairings of the round-robin are played in parallel, and each pairing stops as soon as a sequential probability ratio test on its decisive pairs decides which engine is stronger
+ * (or after the maximum number of pairs). The result of an engine on a game number is computed once and shared by all its pairings.
+ *
+ * Engines: andor (AI.findNextMove with the full heuristic), andor-adjacency (cheap ordering evaluator), andor-batch (BatchEvaluator),
+ * mcts[:iterations] (MonteCarloPlanner), pimc[:samples[:depth]] (DeterminizedSearch) and random (uniformly random moves).
+ * usage: java TournamentRunner [-games maximum number of pairs per pairing] [-threads n] [-seed s] engine...
+ */
+public class TournamentRunner {
+	//errors of the sequential test, and half-width of the indifference region around 1/2 of the probability that the first engine wins a decisive pair
+	private final static double ALPHA = 0.05;
+	private final static double BETA = 0.05;
+	private final static double MARGIN = 0.1;
+	//number of decisive pairs before the test is allowed to stop a pairing
+	private final static int MIN_DECISIVE = 10;
+	//quantile of the normal distribution for the confidence intervals (95%)
+	private final static double Z = 1.96;
+
+	//results of a game for the engine (the same values as the results of GameRecorder)
+	public final static int TIE = 0;
+	public final static int LOSS = 1;
+	public final static int WIN = 2;
+
+	/**
+	 * Player of the red pieces. An engine is used by a single thread at a time.
+	 */
+	public interface Engine {
+		/**
+		 * Returns the column to play
+		 * @param beliefState the current belief state (it is the turn of the AI)
+		 * @return an integer which represents the column to play
+		 */
+		int findNextMove(BeliefState beliefState);
+	}
+
+	/**
+	 * Named engine configuration, with the results of its games (by number of game) and its time of decision
+	 */
+	private static class Entrant {
+		final String name;
+		final ThreadLocal<Engine> engines;
+		final ConcurrentHashMap<Integer, FutureTask<Integer>> games;
+		final AtomicLong decisions;
+		final AtomicLong decisionNanos;
+
+		Entrant(String name, Supplier<Engine> factory) {
+			this.name = name;
+			this.engines = ThreadLocal.withInitial(factory);
+			this.games = new ConcurrentHashMap<Integer, FutureTask<Integer>>();
+			this.decisions = new AtomicLong();
+			this.decisionNanos = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Comparison of two engines: the pairs played, the wins, draws and losses of the first engine, and the decision of the sequential test
+	 */
+	private static class Pairing {
+		final Entrant first;
+		final Entrant second;
+		int started;
+		int wins, draws, losses;
+		//log-likelihood ratio of the sequential test, and its decision (0 while the test goes on, 1 if the first engine is stronger and -1 if the second one is)
+		double llr;
+		int decision;
+
+		Pairing(Entrant first, Entrant second) {
+			this.first = first;
+			this.second = second;
+		}
+	}
+
+	/**
+	 * Pair of games to play: the game with a given number for both engines of a pairing
+	 */
+	private static class Pair {
+		final Pairing pairing;
+		final int number;
+
+		Pair(Pairing pairing, int number) {
+			this.pairing = pairing;
+			this.number = number;
+		}
+	}
+
+	private final ArrayList<Entrant> entrants;
+	private final ArrayList<Pairing> pairings;
+	private final int maxPairs;
+	private final long seed;
+
+	/**
+	 * Construct a round-robin tournament between engines
+	 * @param names the names of the engines (see the documentation of the class)
+	 * @param maxPairs maximum number of pairs of games of a pairing
+	 * @param seed seed of the random choices of the opponent
+	 * @throws IllegalArgumentException if a name is not the name of an engine
+	 */
+	public TournamentRunner(String[] names, int maxPairs, long seed) {
+		this.entrants = new ArrayList<Entrant>();
+		this.pairings = new ArrayList<Pairing>();
+		this.maxPairs = maxPairs;
+		this.seed = seed;
+		for(String name: names) {
+			this.entrants.add(new Entrant(name, TournamentRunner.engine(name)));
+		}
+		for(int i = 0; i < this.entrants.size(); i++) {
+			for(int j = i + 1; j < this.entrants.size(); j++) {
+				this.pairings.add(new Pairing(this.entrants.get(i), this.entrants.get(j)));
+			}
+		}
+		//a single engine is only measured against the opponent
+		if(this.entrants.size() == 1)
+			this.pairings.add(new Pairing(this.entrants.get(0), null));
+	}
+
+	/**
+	 * Create the factory of the engines of a given name
+	 * @param name the name of the engine, with its parameters separated by colons
+	 * @return the factory of the engine
+	 * @throws IllegalArgumentException if the name is not the name of an engine
+	 */
+	public static Supplier<Engine> engine(String name) {
+		String[] parts = name.split(":");
+		switch(parts[0]) {
+		case "andor":
+			return () -> TournamentRunner.andOr(AI.DEFAULT_EVALUATOR, AI.DEFAULT_EVALUATOR);
+		case "andor-adjacency":
+			return () -> TournamentRunner.andOr(new AdjacencyEvaluator(), AI.DEFAULT_EVALUATOR);
+		case "andor-batch":
+			return () -> {
+				BatchEvaluator batch = new BatchEvaluator();
+				return TournamentRunner.andOr(batch, batch);
+			};
+		case "mcts":
+			int iterations = parts.length > 1? Integer.parseInt(parts[1]): 2000;
+			return () -> new MonteCarloPlanner(iterations, Long.MAX_VALUE / 2)::findNextMove;
+		case "pimc":
+			int samples = parts.length > 1? Integer.parseInt(parts[1]): 16;
+			int depth = parts.length > 2? Integer.parseInt(parts[2]): 2;
+			//the games are already played in parallel, each search uses a single thread
+			return () -> new DeterminizedSearch(samples, depth, 1)::findNextMove;
+		case "random":
+			return () -> {
+				Random random = new Random();
+				return beliefState -> {
+					MoveList moves = beliefState.getMoves();
+					return moves.get(random.nextInt(moves.size()));
+				};
+			};
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + name);
+		}
+	}
+
+	//the and-or search of the AI with given evaluators (the evaluators are set for the thread before each search, since the threads play for all the engines)
+	private static Engine andOr(Evaluator ordering, Evaluator leaf) {
+		return beliefState -> {
+			AI.setEvaluators(ordering, leaf);
+			return AI.findNextMove(beliefState);
+		};
+	}
+
+	/**
+	 * Play the tournament on a number of threads
+	 * @param threads the number of threads
+	 * @throws InterruptedException if the calling thread is interrupted
+	 * @throws ExecutionException if a game failed
+	 */
+	public void run(int threads) throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "tournament");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+			for(int i = 0; i < threads; i++) {
+				workers.add(executor.submit(() -> {
+					Pair pair;
+					while((pair = this.nextPair()) != null) {
+						int first = this.result(pair.pairing.first, pair.number);
+						int second = pair.pairing.second == null? TIE: this.result(pair.pairing.second, pair.number);
+						this.record(pair.pairing, TournamentRunner.score(first) - TournamentRunner.score(second));
+					}
+					return null;
+				}));
+			}
+			for(Future<?> worker: workers) {
+				worker.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Choose the next pair of games to play: the pairing which has played the fewest pairs among the ones which are not decided
+	 * @return the pair of games, or null if all the pairings are over
+	 */
+	private synchronized Pair nextPair() {
+		Pairing next = null;
+		for(Pairing pairing: this.pairings) {
+			if(pairing.decision == 0 && pairing.started < this.maxPairs && (next == null || pairing.started < next.started))
+				next = pairing;
+		}
+		if(next == null)
+			return null;
+		return new Pair(next, next.started++);
+	}
+
+	/**
+	 * Record the result of a pair of games and update the sequential test of the pairing. The pairs which end after the decision are not counted.
+	 * @param pairing the pairing
+	 * @param difference the score of the first engine minus the score of the second one
+	 */
+	private synchronized void record(Pairing pairing, int difference) {
+		if(pairing.decision != 0)
+			return;
+		if(difference > 0) {
+			pairing.wins++;
+			pairing.llr += Math.log((0.5 + MARGIN) / (0.5 - MARGIN));
+		}
+		else if(difference < 0) {
+			pairing.losses++;
+			pairing.llr += Math.log((0.5 - MARGIN) / (0.5 + MARGIN));
+		}
+		else {
+			pairing.draws++;
+		}
+		if(pairing.second == null || pairing.wins + pairing.losses < MIN_DECISIVE)
+			return;
+		if(pairing.llr >= Math.log((1 - BETA) / ALPHA))
+			pairing.decision = 1;
+		else if(pairing.llr <= Math.log(BETA / (1 - ALPHA)))
+			pairing.decision = -1;
+	}
+
+	/**
+	 * Return the result of an engine on a game, the game being played by the calling thread if no other pairing has played it
+	 * @param entrant the engine
+	 * @param number the number of the game
+	 * @return WIN, TIE or LOSS
+	 */
+	private int result(Entrant entrant, int number) throws InterruptedException, ExecutionException {
+		FutureTask<Integer> task = new FutureTask<Integer>(() -> this.play(entrant, number));
+		FutureTask<Integer> existing = entrant.games.putIfAbsent(number, task);
+		if(existing != null)
+			return existing.get();
+		task.run();
+		return task.get();
+	}
+
+	/**
+	 * Play a game of an engine against ProbabilisticOpponentAI
+	 * @param entrant the engine
+	 * @param number the number of the game, which gives the seed of the opponent
+	 * @return WIN, TIE or LOSS
+	 */
+	private int play(Entrant entrant, int number) {
+		Engine engine = entrant.engines.get();
+		ProbabilisticOpponentAI opponent = new ProbabilisticOpponentAI();
+		Random random = new Random(this.seed + number);
+		GameState game = new GameState();
+		BeliefState beliefState = new BeliefState();
+		beliefState.add(game.copy());
+		while(!game.isGameOver() && !game.isFull()) {
+			long start = System.nanoTime();
+			int aiPlay = engine.findNextMove(beliefState);
+			entrant.decisionNanos.addAndGet(System.nanoTime() - start);
+			entrant.decisions.incrementAndGet();
+			game.putPiece(aiPlay);
+			beliefState.setStates(beliefState.observePlayer(aiPlay, game));
+			if(game.isGameOver() || game.isFull())
+				break;
+			game.putPiece(opponent.decision(game, random));
+			beliefState.setStates(beliefState.observeOpponent(game));
+		}
+		if(!game.isGameOver())
+			return TIE;
+		return game.turn()? LOSS: WIN;
+	}
+
+	//score of a result in half points
+	private static int score(int result) {
+		return result == WIN? 2: result == TIE? 1: 0;
+	}
+
+	/**
+	 * Computes the Wilson score interval of a proportion
+	 * @param successes the number of successes (a draw counts for one half)
+	 * @param n the number of trials
+	 * @return the lower and the upper bound of the interval
+	 */
+	public static double[] wilson(double successes, int n) {
+		if(n == 0)
+			return new double[] {0., 1.};
+		double p = successes / n;
+		double z2 = Z * Z;
+		double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+		double half = Z / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4. * n * n));
+		return new double[] {Math.max(0., center - half), Math.min(1., center + half)};
+	}
+
+	//a proportion and its interval, in percents
+	private static String percent(double successes, int n) {
+		double[] interval = TournamentRunner.wilson(successes, n);
+		return String.format("%.1f%% [%.1f%%, %.1f%%]", n == 0? 0.: 100 * successes / n, 100 * interval[0], 100 * interval[1]);
+	}
+
+	/**
+	 * Print the results of the engines against the opponent and the results of the pairings
+	 */
+	public void report() throws InterruptedException, ExecutionException {
+		System.out.println("against ProbabilisticOpponentAI (score, 95% interval):");
+		for(Entrant entrant: this.entrants) {
+			int[] results = new int[3];
+			for(FutureTask<Integer> game: entrant.games.values()) {
+				results[game.get()]++;
+			}
+			int n = results[WIN] + results[TIE] + results[LOSS];
+			System.out.println("  " + entrant.name + ": Win: " + results[WIN] + " Ties: " + results[TIE] + " Loose: " + results[LOSS]
+					+ " score = " + TournamentRunner.percent(results[WIN] + 0.5 * results[TIE], n)
+					+ " mean time = " + String.format("%.2f", entrant.decisionNanos.get() / 1e6 / Math.max(1, entrant.decisions.get())) + " ms");
+		}
+		for(Pairing pairing: this.pairings) {
+			if(pairing.second == null)
+				continue;
+			int n = pairing.wins + pairing.draws + pairing.losses;
+			String decision = pairing.decision > 0? pairing.first.name + " is stronger": pairing.decision < 0? pairing.second.name + " is stronger": "undecided";
+			System.out.println(pairing.first.name + " vs " + pairing.second.name + ": Win: " + pairing.wins + " Draws: " + pairing.draws + " Loose: " + pairing.losses + " (" + n + " pairs)"
+					+ " score = " + TournamentRunner.percent(pairing.wins + 0.5 * pairing.draws, n)
+					+ " decisive = " + TournamentRunner.percent(pairing.wins, pairing.wins + pairing.losses)
+					+ " llr = " + String.format("%.2f", pairing.llr) + " -> " + decision);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int maxPairs = 1000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.currentTimeMillis();
+		ArrayList<String> names = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "-games": maxPairs = Integer.parseInt(args[++i]); break;
+			case "-threads": threads = Integer.parseInt(args[++i]); break;
+			case "-seed": seed = Long.parseLong(args[++i]); break;
+			default: names.add(args[i]);
+			}
+		}
+		if(names.isEmpty()) {
+			names.add("andor");
+			names.add("random");
+		}
+		long start = System.nanoTime();
+		TournamentRunner tournament = new TournamentRunner(names.toArray(new String[0]), maxPairs, seed);
+		tournament.run(threads);
+		tournament.report();
+		System.out.println("seed = " + seed + " time = " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Table of the plans already computed by the search for a given belief state at a given depth. The belief states are stored in their canonical form (see BeliefState.canonical()),
+ * so a plan computed for a belief state is reused for its mirror, its action being mirrored as well. Only the action and the values of a plan are kept, not its subplans.
+ */
+public class TranspositionTable {
+	//handle returned when the belief state is not in the table
+	public final static int MISS = -2;
+	
+	private ArrayList<TreeMap<BeliefState, Plan>> plans;
+	
+	/**
+	 * Values of a plan, for the canonical form of its belief state
+	 */
+	private static class Plan {
+		//action of the plan, or NodeArena.NO_ACTION if there is no plan
+		int action;
+		double heuristicValue;
+		double subplanValue;
+	}
+	
+	/**
+	 * construct an empty table
+	 */
+	public TranspositionTable() {
+		this.plans = new ArrayList<TreeMap<BeliefState, Plan>>();
+	}
+	
+	/**
+	 * Search the plan of a belief state and copy it into the arena if it is found. The values are scaled to the probabilities of the belief state.
+	 * @param canonical the canonical form of the belief state
+	 * @param mirrored true if the belief state is the mirror of its canonical form
+	 * @param depth the depth of the belief state in the search
+	 * @param arena the arena in which the plan is copied
+	 * @return the handle of the plan, NodeArena.NONE if the belief state has no plan, and MISS if the belief state is not in the table
+	 */
+	public int get(BeliefState canonical, boolean mirrored, int depth, NodeArena arena) {
+		if(depth >= this.plans.size()) {
+			return MISS;
+		}
+		Entry<BeliefState, Plan> entry = this.plans.get(depth).ceilingEntry(canonical);
+		if(entry == null || canonical.compareTo(entry.getKey()) != 0) {
+			return MISS;
+		}
+		Plan plan = entry.getValue();
+		if(plan.action == NodeArena.NO_ACTION) {
+			return NodeArena.NONE;
+		}
+		double scale = canonical.probaSum() / entry.getKey().probaSum();
+		int action = mirrored? canonical.geometry().mirror(plan.action): plan.action;
+		int node = arena.newNode(action, false, plan.heuristicValue * scale);
+		arena.setSubplanValue(node, plan.subplanValue * scale);
+		return node;
+	}
+	
+	/**
+	 * Put the plan of a belief state into the table
+	 * @param canonical the canonical form of the belief state
+	 * @param mirrored true if the belief state is the mirror of its canonical form
+	 * @param depth the depth of the belief state in the search
+	 * @param arena the arena in which the plan is stored
+	 * @param node the handle of the plan, or NodeArena.NONE if the belief state has no plan
+	 */
+	public void put(BeliefState canonical, boolean mirrored, int depth, NodeArena arena, int node) {
+		while(depth >= this.plans.size()) {
+			this.plans.add(new TreeMap<BeliefState, Plan>());
+		}
+		Plan plan = new Plan();
+		if(node == NodeArena.NONE) {
+			plan.action = NodeArena.NO_ACTION;
+		}
+		else {
+			plan.action = mirrored? canonical.geometry().mirror(arena.action(node)): arena.action(node);
+			plan.heuristicValue = arena.heuristicValue(node);
+			plan.subplanValue = arena.subplanValue(node);
+		}
+		this.plans.get(depth).put(canonical, plan);
+	}
+	
+	/**
+	 * Remove all the plans of the table
+	 */
+	public void clear() {
+		for(TreeMap<BeliefState, Plan> map: this.plans) {
+			map.clear();
+		}
+	}
+}